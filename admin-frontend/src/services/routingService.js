@@ -8,4 +8,9 @@ export const generateRoute = (truckId) => {
      return Promise.reject(new Error("Truck ID is required to generate a route."));
   }
   return api.post('/routing/generate', { truckId });
-};
\ No newline at end of file
+};
+// POST /api/v1/routing/plan-fleet
+// Splits all full bins across every IDLE truck in one plan
+export const planFleet = () => {
+  return api.post('/routing/plan-fleet');
+};
@@ -3,11 +3,14 @@ package com.smartwaste.adminbackend.controller;
 import com.smartwaste.adminbackend.model.Alert;
 import com.smartwaste.adminbackend.service.AlertService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize; // Ensure PreAuthorize is imported
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/alerts")
@@ -26,13 +29,37 @@ public class AlertController {
     }
 
     // ++ NEW ENDPOINT: GET /api/v1/alerts/resolved - Fetches resolved alerts ++
+    // GET /api/v1/alerts/resolved?limit=50&cursor=...&fields=id,message,timestamp - One page, newest first
     @GetMapping("/resolved")
-    public ResponseEntity<List<Alert>> getResolvedAlerts() {
-        List<Alert> alerts = alertService.getResolvedAlerts();
-        return ResponseEntity.ok(alerts);
+    public ResponseEntity<?> getResolvedAlerts(@RequestParam(required = false) String cursor,
+                                               @RequestParam(required = false) Integer limit,
+                                               @RequestParam(required = false) String fields) {
+        if (cursor == null && limit == null && fields == null) {
+            List<Alert> alerts = alertService.getResolvedAlerts();
+            return ResponseEntity.ok(alerts);
+        }
+        try {
+            return ResponseEntity.ok(alertService.getResolvedAlertsPage(cursor, limit, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
 
+    // GET /api/v1/alerts/stream - Server-sent events: unresolved alerts, then each created/updated/resolved alert.
+    // Reconnecting clients send Last-Event-ID (browsers do it automatically) to resume without a new snapshot.
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamAlerts(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                   @RequestParam(value = "lastEventId", required = false) String lastEventId) {
+        return alertService.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+
+    // GET /api/v1/alerts/stats - Alert pipeline queue depth, throughput, drops and batch timing
+    @GetMapping("/stats")
+    public ResponseEntity<AlertService.PipelineStats> getAlertPipelineStats() {
+        return ResponseEntity.ok(alertService.getPipelineStats());
+    }
+
     // POST /api/v1/alerts/{id}/resolve - Marks an alert as resolved (no changes)
     @PostMapping("/{id}/resolve")
     public ResponseEntity<Alert> resolveAlert(@PathVariable String id) {
@@ -1,12 +1,18 @@
 package com.smartwaste.adminbackend.controller;
 
 // import com.smartwaste.adminbackend.service.BinService; // No longer needed directly for prediction
+import com.smartwaste.adminbackend.service.BinHistoryService;
+import com.smartwaste.adminbackend.service.GlobalFillModelService;
+import com.smartwaste.adminbackend.service.ModelRegistry;
+import com.smartwaste.adminbackend.service.OnlineFillModelService;
 import com.smartwaste.adminbackend.service.PredictionService; // ++ Import PredictionService ++
+import com.smartwaste.adminbackend.service.TrainingJobService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,6 +27,24 @@ public class AnalyticsController {
     @Autowired // ++ Inject PredictionService ++
     private PredictionService predictionService;
 
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private TrainingJobService trainingJobService;
+
+    @Autowired
+    private OnlineFillModelService onlineFillModelService;
+
+    @Autowired
+    private GlobalFillModelService globalFillModelService;
+
+    @Autowired
+    private BinHistoryService binHistoryService;
+
+    private static final int MAX_HORIZONS = 48;
+    private static final int MAX_BATCH_BINS = 50_000;
+    private static final int MAX_BENCHMARK_BINS = 5_000;
     // GET /api/v1/analytics/predict/bin/{binId}?hours={hours}
     // Uses the ML model if trained, otherwise might fallback or error
     @GetMapping("/predict/bin/{binId}")
@@ -44,21 +68,111 @@ public class AnalyticsController {
     }
 
 
+    // POST /api/v1/analytics/predict/batch  body: {"binIds": ["..."], "hours": [1, 4, 8]} or {"all": true, "hours": [...]}
+    // Forecast matrix for many bins at many horizons in one call
+    @PostMapping("/predict/batch")
+    public ResponseEntity<?> predictBatch(@RequestBody PredictionService.BatchPredictionRequest request) {
+        List<Integer> hours = request.hours();
+        if (hours == null || hours.isEmpty() || hours.size() > MAX_HORIZONS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "hours must list 1 to " + MAX_HORIZONS + " horizons."));
+        }
+        for (Integer h : hours) {
+            if (h == null || h <= 0 || h > 48) {
+                return ResponseEntity.badRequest().body(Map.of("message", "Prediction hours must be between 1 and 48."));
+            }
+        }
+        boolean all = Boolean.TRUE.equals(request.all());
+        if (!all && (request.binIds() == null || request.binIds().isEmpty() || request.binIds().size() > MAX_BATCH_BINS)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Give all=true or 1 to " + MAX_BATCH_BINS + " binIds."));
+        }
+        return ResponseEntity.ok(predictionService.predictBatch(all ? null : request.binIds(), hours));
+    }
+
     // ++ NEW ENDPOINT: POST /api/v1/analytics/train/bin/{binId} ++
-    // Trigger training for a specific bin (using simulated data for now)
+    // Trigger training for a specific bin (using simulated data for now); runs as a background job
     @PostMapping("/train/bin/{binId}")
     public ResponseEntity<?> trainBinModel(@PathVariable String binId) {
-        try {
-            String result = predictionService.trainBinFillModel(binId);
-            if (result.startsWith("Error:")) {
-                return ResponseEntity.badRequest().body(Map.of("message", result));
-            }
-            return ResponseEntity.ok(Map.of("message", result));
-        } catch (Exception e) {
-            System.err.println("Unexpected error during training trigger for bin " + binId + ": " + e.getMessage());
-            e.printStackTrace();
-            return ResponseEntity.internalServerError().body(Map.of("message", "Could not trigger training due to server error."));
+        String jobId = predictionService.submitTraining(List.of(binId));
+        return ResponseEntity.accepted().body(Map.of("message", "Training started for bin " + binId + ".", "jobId", jobId));
+    }
+
+    // POST /api/v1/analytics/train/jobs  body: {"binIds": ["..."]} or {"all": true}
+    // Starts one background job for many bins; poll GET /train/jobs/{jobId} for progress
+    @PostMapping("/train/jobs")
+    public ResponseEntity<?> startTrainingJob(@RequestBody PredictionService.TrainingRequest request) {
+        boolean all = Boolean.TRUE.equals(request.all());
+        if (!all && (request.binIds() == null || request.binIds().isEmpty() || request.binIds().size() > MAX_BATCH_BINS)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "Give all=true or 1 to " + MAX_BATCH_BINS + " binIds."));
+        }
+        String jobId = predictionService.submitTraining(all ? null : request.binIds());
+        return ResponseEntity.accepted().body(Map.of("message", "Training job started.", "jobId", jobId));
+    }
+
+    // POST /api/v1/analytics/train/global - Trains the shared model of each waste type over the whole fleet's history
+    @PostMapping("/train/global")
+    public ResponseEntity<?> trainGlobalModels() {
+        String jobId = globalFillModelService.submitTraining();
+        return ResponseEntity.accepted().body(Map.of("message", "Global model training started.", "jobId", jobId));
+    }
+
+    // GET /api/v1/analytics/train/jobs - Recent training jobs, newest first
+    @GetMapping("/train/jobs")
+    public ResponseEntity<List<TrainingJobService.JobSummary>> listTrainingJobs() {
+        return ResponseEntity.ok(trainingJobService.listJobs());
+    }
+
+    // GET /api/v1/analytics/train/jobs/{jobId} - Progress, plus time taken or error per bin
+    @GetMapping("/train/jobs/{jobId}")
+    public ResponseEntity<TrainingJobService.JobDetail> getTrainingJob(@PathVariable String jobId) {
+        return trainingJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // DELETE /api/v1/analytics/train/jobs/{jobId} - Cancels the bins not started yet
+    @DeleteMapping("/train/jobs/{jobId}")
+    public ResponseEntity<Void> cancelTrainingJob(@PathVariable String jobId) {
+        if (trainingJobService.cancel(jobId)) {
+            return ResponseEntity.noContent().build();
         }
+        return ResponseEntity.notFound().build();
+    }
+
+    // GET /api/v1/analytics/models/stats - Stored models, models in memory and cache hit/miss/eviction counts
+    @GetMapping("/models/stats")
+    public ResponseEntity<ModelRegistry.RegistryStats> getModelStats() {
+        return ResponseEntity.ok(modelRegistry.getStats());
+    }
+
+    // GET /api/v1/analytics/models/online/stats - Online (per-reading) models: how many, how many warm, updates, drift refits
+    @GetMapping("/models/online/stats")
+    public ResponseEntity<OnlineFillModelService.OnlineStats> getOnlineModelStats() {
+        return ResponseEntity.ok(onlineFillModelService.getStats());
+    }
+
+    // GET /api/v1/analytics/history/stats - Fill-history readings queued, written, kept for retry and dropped
+    @GetMapping("/history/stats")
+    public ResponseEntity<BinHistoryService.HistoryStats> getHistoryStats() {
+        return ResponseEntity.ok(binHistoryService.getStats());
+    }
+
+    // POST /api/v1/analytics/models/global/benchmark?sampleBins=200
+    // Compares per-bin and shared models on held-out readings of sampled bins; runs as a background job
+    @PostMapping("/models/global/benchmark")
+    public ResponseEntity<?> startGlobalBenchmark(@RequestParam(defaultValue = "200") int sampleBins) {
+        if (sampleBins <= 0 || sampleBins > MAX_BENCHMARK_BINS) {
+            return ResponseEntity.badRequest().body(Map.of("message", "sampleBins must be between 1 and " + MAX_BENCHMARK_BINS + "."));
+        }
+        String jobId = globalFillModelService.submitBenchmark(sampleBins);
+        return ResponseEntity.accepted().body(Map.of("message", "Benchmark started.", "jobId", jobId));
+    }
+
+    // GET /api/v1/analytics/models/global/benchmark - Result of the last finished benchmark
+    @GetMapping("/models/global/benchmark")
+    public ResponseEntity<GlobalFillModelService.BenchmarkResult> getGlobalBenchmark() {
+        return globalFillModelService.getLastBenchmark()
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
     // Add more analytics/prediction endpoints here
@@ -3,11 +3,13 @@ package com.smartwaste.adminbackend.controller;
 import com.smartwaste.adminbackend.model.AdminUser;
 import com.smartwaste.adminbackend.repository.AdminUserRepository;
 import com.smartwaste.adminbackend.security.JwtUtil;
+import com.smartwaste.adminbackend.security.StreamTicketService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -39,6 +41,9 @@ public class AuthController {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private StreamTicketService streamTickets;
+
     // POST /api/v1/auth/register (Simple registration, ensure first admin is created manually or via runner)
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody RegisterRequest registerRequest) {
@@ -72,4 +77,13 @@ public class AuthController {
         // Return the token in the response body
         return ResponseEntity.ok(Map.of("token", jwt));
     }
-}
\ No newline at end of file
+
+    // POST /api/v1/auth/stream-ticket (needs the login token) - One-time ticket for opening a live
+    // stream from a browser: GET /api/v1/alerts/stream?ticket=... or /api/v1/trucks/stream?ticket=...
+    // Reconnects need a fresh ticket (pass lastEventId to resume).
+    @PostMapping("/stream-ticket")
+    public ResponseEntity<?> createStreamTicket(Authentication authentication) {
+        return ResponseEntity.ok(Map.of("ticket", streamTickets.issue(authentication.getName()),
+                "expiresInSeconds", streamTickets.getTtlSeconds()));
+    }
+}
@@ -1,13 +1,18 @@
 package com.smartwaste.adminbackend.controller;
 
 import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.service.BinHistoryService;
 import com.smartwaste.adminbackend.service.BinService;
+import com.smartwaste.adminbackend.service.ViewportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/bins") // All URLs in this file will start with this
@@ -18,10 +23,45 @@ public class BinController {
     @Autowired
     private BinService binService;
 
+    @Autowired
+    private BinHistoryService binHistoryService;
+
+    @Autowired
+    private ViewportService viewportService;
+
+    private static final double MAX_RADIUS_KM = 50;
+    private static final int MAX_NEAREST = 500;
+    private static final int MAX_READINGS_PER_REQUEST = 50_000;
+    private static final Duration MAX_HISTORY_WINDOW = Duration.ofDays(366);
+
     // GET /api/v1/bins  (Get all bins)
+    // GET /api/v1/bins?bbox=79.83,6.85,79.93,6.98&zoom=13  (Only the map viewport, bbox = minLon,minLat,maxLon,maxLat;
+    // clustered when zoomed out or crowded)
+    // GET /api/v1/bins?limit=500&cursor=...&fields=id,location,fillLevel  (One page; pass nextCursor to get the next one)
     @GetMapping
-    public List<Bin> getAllBins() {
-        return binService.getAllBins();
+    public ResponseEntity<?> getAllBins(@RequestParam(required = false) String bbox,
+                                        @RequestParam(required = false) Integer zoom,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(required = false) Integer limit,
+                                        @RequestParam(required = false) String fields) {
+        if (bbox == null) {
+            if (cursor == null && limit == null && fields == null) {
+                return ResponseEntity.ok(binService.getAllBins());
+            }
+            try {
+                return ResponseEntity.ok(binService.getBinsPage(cursor, limit, fields));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+            }
+        }
+        if (zoom != null && (zoom < 0 || zoom > ViewportService.MAX_ZOOM)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "zoom must be between 0 and " + ViewportService.MAX_ZOOM + "."));
+        }
+        try {
+            return ResponseEntity.ok(viewportService.getBins(ViewportService.BoundingBox.parse(bbox), zoom));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     // GET /api/v1/bins/{id}  (Get a single bin by its ID)
@@ -32,6 +72,81 @@ public class BinController {
                 .orElse(ResponseEntity.notFound().build()); // 404 Not Found
     }
 
+    // GET /api/v1/bins/nearby?lat=6.91&lon=79.86&radiusKm=2&minFill=80  (Bins within X km above Y% fill, closest first)
+    @GetMapping("/nearby")
+    public ResponseEntity<?> getBinsNearby(@RequestParam double lat, @RequestParam double lon,
+                                           @RequestParam double radiusKm,
+                                           @RequestParam(defaultValue = "0") double minFill) {
+        if (radiusKm <= 0 || radiusKm > MAX_RADIUS_KM) {
+            return ResponseEntity.badRequest().body(Map.of("message", "radiusKm must be between 0 and " + MAX_RADIUS_KM + "."));
+        }
+        return ResponseEntity.ok(binService.findBinsNear(location(lat, lon), radiusKm, minFill));
+    }
+
+    // GET /api/v1/bins/nearest?lat=6.91&lon=79.86&count=10  (The k closest bins)
+    @GetMapping("/nearest")
+    public ResponseEntity<?> getNearestBins(@RequestParam double lat, @RequestParam double lon,
+                                            @RequestParam(defaultValue = "10") int count) {
+        if (count <= 0 || count > MAX_NEAREST) {
+            return ResponseEntity.badRequest().body(Map.of("message", "count must be between 1 and " + MAX_NEAREST + "."));
+        }
+        return ResponseEntity.ok(binService.findNearestBins(location(lat, lon), count));
+    }
+
+    // POST /api/v1/bins/within  body: {"polygon": [[lat, lon], ...]}  (Bins inside a drawn area)
+    @PostMapping("/within")
+    public ResponseEntity<?> getBinsWithin(@RequestBody Map<String, List<List<Double>>> payload) {
+        List<List<Double>> polygon = payload.get("polygon");
+        if (polygon == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "polygon is required."));
+        }
+        try {
+            return ResponseEntity.ok(binService.findBinsInPolygon(polygon));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // POST /api/v1/bins/readings  body: [{"binId": "...", "fillLevel": 42.5, "timestamp": "2024-05-01T08:00:00Z"}, ...]
+    // (Batch of sensor fill-level readings)
+    @PostMapping("/readings")
+    public ResponseEntity<?> ingestReadings(@RequestBody List<BinService.BinReading> readings) {
+        if (readings.size() > MAX_READINGS_PER_REQUEST) {
+            return ResponseEntity.badRequest().body(Map.of("message", "At most " + MAX_READINGS_PER_REQUEST + " readings per request."));
+        }
+        return ResponseEntity.ok(binService.ingestReadings(readings));
+    }
+
+    // GET /api/v1/bins/{id}/history?from=2024-05-01T00:00:00Z&to=...  (Every reading in the window; default last 24 h)
+    @GetMapping("/{id}/history")
+    public ResponseEntity<?> getBinHistory(@PathVariable String id,
+                                           @RequestParam(required = false) Instant from,
+                                           @RequestParam(required = false) Instant to) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofHours(24));
+        if (!start.isBefore(end) || Duration.between(start, end).compareTo(MAX_HISTORY_WINDOW) > 0) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must be before to, at most 366 days apart."));
+        }
+        return ResponseEntity.ok(binHistoryService.getHistory(id, start, end));
+    }
+
+    // GET /api/v1/bins/{id}/history/downsampled?from=...&to=...&stepMinutes=60  (Min/max/avg per step; default last 7 days, hourly)
+    @GetMapping("/{id}/history/downsampled")
+    public ResponseEntity<?> getBinHistoryDownsampled(@PathVariable String id,
+                                                      @RequestParam(required = false) Instant from,
+                                                      @RequestParam(required = false) Instant to,
+                                                      @RequestParam(defaultValue = "60") int stepMinutes) {
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(7));
+        if (!start.isBefore(end) || Duration.between(start, end).compareTo(MAX_HISTORY_WINDOW) > 0) {
+            return ResponseEntity.badRequest().body(Map.of("message", "from must be before to, at most 366 days apart."));
+        }
+        if (stepMinutes <= 0) {
+            return ResponseEntity.badRequest().body(Map.of("message", "stepMinutes must be positive."));
+        }
+        return ResponseEntity.ok(binHistoryService.getDownsampled(id, start, end, Duration.ofMinutes(stepMinutes)));
+    }
+
     // POST /api/v1/bins  (Create a new bin)
     @PostMapping
     public ResponseEntity<Bin> createBin(@RequestBody Bin bin) {
@@ -55,4 +170,11 @@ public class BinController {
         }
         return ResponseEntity.notFound().build(); // 404 Not Found
     }
+
+    private static Bin.Location location(double lat, double lon) {
+        Bin.Location location = new Bin.Location();
+        location.setLatitude(lat);
+        location.setLongitude(lon);
+        return location;
+    }
 }
\ No newline at end of file
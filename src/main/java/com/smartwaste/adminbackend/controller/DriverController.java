@@ -7,7 +7,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/drivers") // Base URL
@@ -18,9 +18,19 @@ public class DriverController {
     private DriverService driverService;
 
     // GET /api/v1/drivers
+    // GET /api/v1/drivers?limit=100&cursor=...&fields=id,name,status - One page; pass nextCursor for the next one
     @GetMapping
-    public List<Driver> getAllDrivers() {
-        return driverService.getAllDrivers();
+    public ResponseEntity<?> getAllDrivers(@RequestParam(required = false) String cursor,
+                                           @RequestParam(required = false) Integer limit,
+                                           @RequestParam(required = false) String fields) {
+        if (cursor == null && limit == null && fields == null) {
+            return ResponseEntity.ok(driverService.getAllDrivers());
+        }
+        try {
+            return ResponseEntity.ok(driverService.getDriversPage(cursor, limit, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     // GET /api/v1/drivers/{id}
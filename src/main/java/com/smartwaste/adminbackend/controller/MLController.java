@@ -10,7 +10,6 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -41,9 +40,19 @@ public class MLController {
     }
 
     // GET /api/v1/ml/datasets - List all dataset metadata
+    // GET /api/v1/ml/datasets?limit=50&cursor=...&fields=id,filename,status - One page, newest upload first
     @GetMapping("/datasets")
-    public ResponseEntity<List<DatasetInfo>> listDatasets() {
-        return ResponseEntity.ok(mlService.listDatasets());
+    public ResponseEntity<?> listDatasets(@RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String fields) {
+        if (cursor == null && limit == null && fields == null) {
+            return ResponseEntity.ok(mlService.listDatasets());
+        }
+        try {
+            return ResponseEntity.ok(mlService.listDatasetsPage(cursor, limit, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
     }
 
     // DELETE /api/v1/ml/datasets/{id} - Delete a dataset
@@ -71,7 +80,7 @@ public class MLController {
             if (result.startsWith("Error:")) {
                 return ResponseEntity.badRequest().body(Map.of("message", result));
             }
-            return ResponseEntity.ok(Map.of("message", result));
+            return ResponseEntity.accepted().body(Map.of("message", result)); // Runs in the background
         } catch (Exception e) {
             System.err.println("Unexpected training trigger error: " + e.getMessage());
             e.printStackTrace();
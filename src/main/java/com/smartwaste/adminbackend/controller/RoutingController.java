@@ -1,16 +1,16 @@
 package com.smartwaste.adminbackend.controller;
 
-import com.smartwaste.adminbackend.model.Truck;
-import com.smartwaste.adminbackend.repository.TruckRepository;
+import com.smartwaste.adminbackend.model.WaypointRoute;
 import com.smartwaste.adminbackend.routing.Node;
 import com.smartwaste.adminbackend.service.RoutingService;
+import com.smartwaste.adminbackend.service.TruckService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/routing")
@@ -21,7 +21,7 @@ public class RoutingController {
     private RoutingService routingService;
 
     @Autowired
-    private TruckRepository truckRepository;
+    private TruckService truckService;
 
     @PostMapping("/generate")
     public ResponseEntity<List<List<Double>>> generateRoute(@RequestBody Map<String, String> payload) {
@@ -33,17 +33,12 @@ public class RoutingController {
         try {
             List<Node> routeNodes = routingService.generateOptimalRoute(truckId);
 
-            List<List<Double>> routeCoordinates = routeNodes.stream()
-                    .map(node -> List.of(node.getLocation().getLatitude(), node.getLocation().getLongitude()))
-                    .collect(Collectors.toList());
+            WaypointRoute route = routingService.toWaypointRoute(routeNodes);
 
-            Truck truck = truckRepository.findById(truckId)
+            truckService.assignRoute(truckId, route)
                     .orElseThrow(() -> new RuntimeException("Truck not found after route generation"));
-            truck.setCurrentRoute(routeCoordinates);
-            truck.setStatus(Truck.TruckStatus.EN_ROUTE);
-            truckRepository.save(truck);
 
-            return ResponseEntity.ok(routeCoordinates);
+            return ResponseEntity.ok(route.toCoordinates());
         } catch (RuntimeException e) { // Catch specific routing errors
             System.err.println("Routing Error: " + e.getMessage());
             // Return a specific error status, maybe 404 if truck not found, 400 if no bins etc.
@@ -54,4 +49,30 @@ public class RoutingController {
             return ResponseEntity.internalServerError().body(null);
         }
     }
-}
\ No newline at end of file
+
+    // POST /api/v1/routing/plan-fleet - Split all full bins across all IDLE trucks in one solve
+    @PostMapping("/plan-fleet")
+    public ResponseEntity<?> planFleet() {
+        try {
+            RoutingService.FleetPlan plan = routingService.planFleet();
+
+            List<Map<String, Object>> routes = new ArrayList<>();
+            for (RoutingService.TruckRoute truckRoute : plan.routes()) {
+                WaypointRoute route = routingService.toWaypointRoute(truckRoute.stops());
+                truckService.assignRoute(truckRoute.truckId(), route);
+                routes.add(Map.of(
+                        "truckId", truckRoute.truckId(),
+                        "licensePlate", truckRoute.licensePlate() != null ? truckRoute.licensePlate() : "",
+                        "route", route.toCoordinates(),
+                        "load", truckRoute.load(),
+                        "remainingCapacity", truckRoute.remainingCapacity(),
+                        "distanceKm", truckRoute.distanceKm()
+                ));
+            }
+            return ResponseEntity.ok(Map.of("routes", routes, "unassignedBinIds", plan.unassignedBinIds()));
+        } catch (RuntimeException e) {
+            System.err.println("Fleet Planning Error: " + e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+}
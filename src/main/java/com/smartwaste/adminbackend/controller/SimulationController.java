@@ -1,21 +1,45 @@
 package com.smartwaste.adminbackend.controller;
 
+import com.smartwaste.adminbackend.service.SimulationScheduler;
 import com.smartwaste.adminbackend.service.TruckService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+
 @RestController
 @RequestMapping("/api/v1/simulation")
 @CrossOrigin(origins = "http://localhost:5173")
 public class SimulationController {
 
+    @Autowired
+    private SimulationScheduler simulationScheduler;
+
     @Autowired
     private TruckService truckService;
 
+    private static final double MAX_ADVANCE_HOURS = 168; // One week
+
+    // Waits for the next tick; concurrent requests share one tick instead of each running their own
     @PostMapping("/tick")
     public ResponseEntity<String> runSimulationTick() {
-        truckService.simulateTruckMovement();
+        simulationScheduler.requestTick().join();
         return ResponseEntity.ok("Simulation tick processed");
     }
+
+    // GET /api/v1/simulation/stats - Tick counts, durations, overruns and scheduler lag
+    @GetMapping("/stats")
+    public ResponseEntity<SimulationScheduler.TickStats> getSimulationStats() {
+        return ResponseEntity.ok(simulationScheduler.getStats());
+    }
+
+    // POST /api/v1/simulation/advance?hours=24 - Jumps the simulation ahead event by event and saves the end state
+    @PostMapping("/advance")
+    public ResponseEntity<?> advanceSimulation(@RequestParam double hours) {
+        if (!(hours > 0 && hours <= MAX_ADVANCE_HOURS)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "hours must be between 0 and " + MAX_ADVANCE_HOURS + "."));
+        }
+        return ResponseEntity.ok(truckService.fastForward(hours));
+    }
 }
@@ -1,13 +1,17 @@
 package com.smartwaste.adminbackend.controller;
 
 import com.smartwaste.adminbackend.model.Truck;
+import com.smartwaste.adminbackend.service.FleetStreamService;
 import com.smartwaste.adminbackend.service.TruckService;
+import com.smartwaste.adminbackend.service.ViewportService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/trucks") // The base URL for all truck APIs
@@ -17,10 +21,47 @@ public class TruckController {
     @Autowired
     private TruckService truckService;
 
+    @Autowired
+    private FleetStreamService fleetStreamService;
+
+    @Autowired
+    private ViewportService viewportService;
+
     // GET /api/v1/trucks
+    // GET /api/v1/trucks?bbox=minLon,minLat,maxLon,maxLat&zoom=13 - Only the map viewport, clustered when zoomed out
+    // GET /api/v1/trucks?limit=100&cursor=...&fields=id,currentLocation - One page; pass nextCursor for the next one
     @GetMapping
-    public List<Truck> getAllTrucks() {
-        return truckService.getAllTrucks();
+    public ResponseEntity<?> getAllTrucks(@RequestParam(required = false) String bbox,
+                                          @RequestParam(required = false) Integer zoom,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(required = false) Integer limit,
+                                          @RequestParam(required = false) String fields) {
+        if (bbox == null) {
+            if (cursor == null && limit == null && fields == null) {
+                return ResponseEntity.ok(truckService.getAllTrucks());
+            }
+            try {
+                return ResponseEntity.ok(truckService.getTrucksPage(cursor, limit, fields));
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+            }
+        }
+        if (zoom != null && (zoom < 0 || zoom > ViewportService.MAX_ZOOM)) {
+            return ResponseEntity.badRequest().body(Map.of("message", "zoom must be between 0 and " + ViewportService.MAX_ZOOM + "."));
+        }
+        try {
+            return ResponseEntity.ok(viewportService.getTrucks(ViewportService.BoundingBox.parse(bbox), zoom));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // GET /api/v1/trucks/stream - Server-sent events: "snapshot" of every truck's position, then one
+    // "delta" per tick with only the trucks that changed. Send Last-Event-ID to resume after a drop.
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamFleet(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                  @RequestParam(value = "lastEventId", required = false) String lastEventId) {
+        return fleetStreamService.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
     }
 
     // GET /api/v1/trucks/{id}
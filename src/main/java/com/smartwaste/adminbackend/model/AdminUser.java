@@ -20,5 +20,6 @@ public class AdminUser {
     @Indexed(unique = true)
     private String username;
     private String password; // Hashed password
+    @Indexed
     private String role; // Stores one of the constants above
 }
\ No newline at end of file
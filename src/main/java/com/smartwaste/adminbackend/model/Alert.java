@@ -2,10 +2,12 @@ package com.smartwaste.adminbackend.model;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime; // Use Java 8+ time
 
 @Document(collection = "alerts")
+@CompoundIndex(name = "resolved_timestamp_id", def = "{'resolved': 1, 'timestamp': -1, '_id': -1}") // Lists and keyset pages
 @Data
 public class Alert {
 
@@ -14,8 +16,10 @@ public class Alert {
     private AlertType type;
     private String message;
     private String relatedEntityId; // ID of the Bin or Truck
-    private LocalDateTime timestamp;
+    private LocalDateTime timestamp; // First occurrence
     private boolean resolved; // To track if the alert has been acknowledged/handled
+    private int occurrences; // Repeats coalesced into this alert (AlertService dedup window)
+    private LocalDateTime lastSeen; // Latest occurrence
 
     public enum AlertType {
         BIN_NEAR_FULL, // e.g., > 85%
@@ -32,5 +36,7 @@ public class Alert {
         this.relatedEntityId = relatedEntityId;
         this.timestamp = LocalDateTime.now(); // Set timestamp on creation
         this.resolved = false; // New alerts are unresolved
+        this.occurrences = 1;
+        this.lastSeen = this.timestamp;
     }
 }
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.smartwaste.adminbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 // @Document tells Spring this is a MongoDB collection (table)
@@ -15,6 +19,9 @@ public class Bin {
 
     private String name; // e.g., "Galle Face Bin 01"
     private Location location; // Nested object for coordinates
+    @JsonIgnore
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position; // Same point as GeoJSON for $near / $geoWithin, set on save (GeoPositionListener)
     private Double capacity; // e.g., 100.0 (in Liters)
     private Double fillLevel; // e.g., 75.5 (as a percentage)
     private WasteType wasteType; // ORGANIC, NON_ORGANIC, MIXED
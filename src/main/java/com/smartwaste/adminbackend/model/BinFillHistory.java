@@ -0,0 +1,29 @@
+package com.smartwaste.adminbackend.model;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+
+// One bin's fill-level readings for one hour, as parallel primitive arrays, plus running
+// stats so hourly (or coarser) charts never have to read the arrays.
+@Document(collection = "bin_fill_history")
+@CompoundIndex(name = "bin_bucket", def = "{'binId': 1, 'bucketStart': 1}", unique = true)
+@Data
+public class BinFillHistory {
+
+    @Id
+    private String id;
+    private String binId;
+    private Instant bucketStart; // Start of the hour (UTC)
+
+    private int[] offsetSeconds; // Seconds into the hour of each reading
+    private double[] fillLevels; // Fill % of each reading
+
+    private int count;
+    private double sum;
+    private double min;
+    private double max;
+}
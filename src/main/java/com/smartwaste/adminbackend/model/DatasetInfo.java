@@ -3,10 +3,12 @@ package com.smartwaste.adminbackend.model;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 import java.time.LocalDateTime;
 
 @Document(collection = "datasets")
+@CompoundIndex(name = "uploadTimestamp_id", def = "{'uploadTimestamp': -1, '_id': -1}") // Newest-first keyset pages
 @Data
 @NoArgsConstructor
 public class DatasetInfo {
@@ -1,8 +1,13 @@
 package com.smartwaste.adminbackend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.Field;
 import com.smartwaste.adminbackend.model.Bin.Location;
 import java.util.List; // +++ ADD THIS IMPORT
 
@@ -17,9 +22,27 @@ public class Truck {
     private Double currentFillLevel;
     private TruckStatus status;
     private Location currentLocation;
+    @JsonIgnore
+    @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+    private GeoJsonPoint position; // currentLocation as GeoJSON, kept in step on save and flush
 
-    // +++ ADD THIS FIELD +++
-    private List<List<Double>> currentRoute;
+    // Remaining waypoints with the bin at each stop; clients see it as currentRoute
+    @JsonIgnore
+    private WaypointRoute route;
+
+    // Documents saved before WaypointRoute still carry the coordinate list; FleetStateService converts it on load
+    @JsonIgnore
+    @Field("currentRoute")
+    private List<List<Double>> legacyRoute;
+
+    // [lat, lon] points still to drive, the shape the dashboard and REST clients use
+    public List<List<Double>> getCurrentRoute() {
+        return route != null ? route.toCoordinates() : null;
+    }
+
+    public void setCurrentRoute(List<List<Double>> coordinates) {
+        this.route = coordinates != null ? WaypointRoute.fromCoordinates(coordinates) : null;
+    }
 
     public enum TruckStatus {
         IDLE,
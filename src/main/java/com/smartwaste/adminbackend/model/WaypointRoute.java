@@ -0,0 +1,140 @@
+package com.smartwaste.adminbackend.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A truck's route as parallel primitive arrays, one slot per waypoint.
+//
+// binIds[i] is the bin collected at waypoint i, or null for the depot and for road geometry
+// between stops, so reaching a waypoint never has to search for the bin. plannedLoads[i] is the
+// waste the planner expected to pick up there. `next` is the index of the waypoint the truck is
+// driving to; reaching it just moves the cursor, nothing is copied.
+//
+// Routes built from plain coordinates (REST clients) have binIds == null and the simulation
+// falls back to looking the bin up by location.
+@Data
+@NoArgsConstructor // For Mongo
+public class WaypointRoute {
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private String[] binIds;
+    private double[] plannedLoads;
+    private int next;
+
+    private WaypointRoute(double[] latitudes, double[] longitudes, String[] binIds, double[] plannedLoads) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.binIds = binIds;
+        this.plannedLoads = plannedLoads;
+    }
+
+    // Route from [lat, lon] points (the format REST clients send and receive); malformed points are skipped
+    public static WaypointRoute fromCoordinates(List<List<Double>> coordinates) {
+        Builder builder = new Builder();
+        for (List<Double> point : coordinates) {
+            if (point == null || point.size() < 2 || point.get(0) == null || point.get(1) == null) continue;
+            builder.add(point.get(0), point.get(1), null, 0.0);
+        }
+        WaypointRoute route = builder.build();
+        route.binIds = null; // No bin information, unlike a planned route
+        return route;
+    }
+
+    // Single-waypoint route, e.g. straight back to the depot
+    public static WaypointRoute to(double latitude, double longitude) {
+        return new WaypointRoute(new double[] {latitude}, new double[] {longitude}, new String[1], new double[1]);
+    }
+
+    // =====================================================
+    // CURSOR
+    // =====================================================
+    public int remaining() {
+        return latitudes == null ? 0 : latitudes.length - next;
+    }
+
+    public boolean isFinished() {
+        return remaining() <= 0;
+    }
+
+    public boolean hasBinIds() {
+        return binIds != null;
+    }
+
+    public double nextLatitude() { return latitudes[next]; }
+    public double nextLongitude() { return longitudes[next]; }
+    public String nextBinId() { return binIds != null ? binIds[next] : null; }
+    public double nextPlannedLoad() { return plannedLoads != null ? plannedLoads[next] : 0.0; }
+
+    public Bin.Location nextLocation() {
+        Bin.Location location = new Bin.Location();
+        location.setLatitude(latitudes[next]);
+        location.setLongitude(longitudes[next]);
+        return location;
+    }
+
+    // The next waypoint has been reached
+    public void advance() {
+        next++;
+    }
+
+    // Waypoints not reached yet, as a new route (e.g. to hand over to another truck)
+    public WaypointRoute rest() {
+        int end = latitudes.length;
+        return new WaypointRoute(
+                Arrays.copyOfRange(latitudes, next, end),
+                Arrays.copyOfRange(longitudes, next, end),
+                binIds != null ? Arrays.copyOfRange(binIds, next, end) : null,
+                plannedLoads != null ? Arrays.copyOfRange(plannedLoads, next, end) : new double[end - next]);
+    }
+
+    // Waypoints not reached yet as [lat, lon] points
+    public List<List<Double>> toCoordinates() {
+        List<List<Double>> points = new ArrayList<>(Math.max(0, remaining()));
+        for (int i = next; i < (latitudes == null ? 0 : latitudes.length); i++) {
+            points.add(List.of(latitudes[i], longitudes[i]));
+        }
+        return points;
+    }
+
+    // Appends waypoints; consecutive points at the same spot are merged (a stop that sits on a road node)
+    public static class Builder {
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private String[] binIds = new String[16];
+        private double[] plannedLoads = new double[16];
+        private int size;
+
+        public Builder add(double latitude, double longitude, String binId, double plannedLoad) {
+            if (size > 0 && latitudes[size - 1] == latitude && longitudes[size - 1] == longitude) {
+                if (binId != null) { // Keep the stop's bin over the anonymous road point
+                    binIds[size - 1] = binId;
+                    plannedLoads[size - 1] = plannedLoad;
+                }
+                return this;
+            }
+            if (size == latitudes.length) {
+                int capacity = size * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                binIds = Arrays.copyOf(binIds, capacity);
+                plannedLoads = Arrays.copyOf(plannedLoads, capacity);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            binIds[size] = binId;
+            plannedLoads[size] = plannedLoad;
+            size++;
+            return this;
+        }
+
+        public WaypointRoute build() {
+            return new WaypointRoute(Arrays.copyOf(latitudes, size), Arrays.copyOf(longitudes, size),
+                    Arrays.copyOf(binIds, size), Arrays.copyOf(plannedLoads, size));
+        }
+    }
+}
@@ -9,4 +9,6 @@ import java.util.Optional;
 @Repository
 public interface AdminUserRepository extends MongoRepository<AdminUser, String> {
     Optional<AdminUser> findByUsername(String username);
+
+    long countByRole(String role);
 }
\ No newline at end of file
@@ -1,13 +1,23 @@
 package com.smartwaste.adminbackend.repository;
 
 import com.smartwaste.adminbackend.model.Bin;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 // This connects to the Bin model and gives us functions like
 // findAll(), findById(), save(), deleteById() for free!
 @Repository
 public interface BinRepository extends MongoRepository<Bin, String> {
-    // We can add custom finder methods later, e.g.:
-    // List<Bin> findByStatus(Bin.BinStatus status);
+    // --- Geospatial (2dsphere index on position); $near results come closest first ---
+    List<Bin> findByPositionNear(GeoJsonPoint point, Distance maxDistance);
+
+    List<Bin> findByPositionNear(GeoJsonPoint point, Pageable limit);
+
+    List<Bin> findByPositionWithin(GeoJsonPolygon polygon);
 }
\ No newline at end of file
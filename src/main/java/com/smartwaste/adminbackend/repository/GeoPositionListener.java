@@ -0,0 +1,30 @@
+package com.smartwaste.adminbackend.repository;
+
+import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.model.Truck;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.stereotype.Component;
+
+// Keeps the GeoJSON `position` of bins and trucks in step with their lat/long location on every
+// save, so the 2dsphere indexes never see a stale point. Field-level updates that $set a location
+// (FleetStateService) set the position alongside it themselves.
+@Component
+public class GeoPositionListener extends AbstractMongoEventListener<Object> {
+
+    @Override
+    public void onBeforeConvert(BeforeConvertEvent<Object> event) {
+        Object source = event.getSource();
+        if (source instanceof Bin bin) {
+            bin.setPosition(toPoint(bin.getLocation()));
+        } else if (source instanceof Truck truck) {
+            truck.setPosition(toPoint(truck.getCurrentLocation()));
+        }
+    }
+
+    // GeoJSON points are (longitude, latitude)
+    public static GeoJsonPoint toPoint(Bin.Location location) {
+        return location != null ? new GeoJsonPoint(location.getLongitude(), location.getLatitude()) : null;
+    }
+}
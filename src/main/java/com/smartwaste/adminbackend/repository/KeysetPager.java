@@ -0,0 +1,188 @@
+package com.smartwaste.adminbackend.repository;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+// Keyset (cursor) pagination for the list endpoints. Each page continues after the last document
+// of the previous one with an indexed range on the sort key instead of skip, so a deep page costs
+// the same as the first and only one page is ever held in memory.
+//
+// Two orders: by _id (bins, trucks, drivers) and newest first on a timestamp with _id as the tie
+// breaker (alerts, datasets, backed by their compound indexes). The cursor handed to clients is
+// opaque (base64 of the last sort key). An optional field list narrows both the Mongo projection
+// and the JSON that is returned.
+@Component
+public class KeysetPager {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${pagination.default-page-size:100}")
+    private int defaultPageSize;
+    @Value("${pagination.max-page-size:1000}")
+    private int maxPageSize;
+
+    // One page; nextCursor is null on the last page
+    public record KeysetPage<T>(List<T> items, String nextCursor) {}
+
+    private final Map<Class<?>, Set<String>> jsonFields = new ConcurrentHashMap<>();
+
+    // Page in _id order, after the document the cursor points at
+    public <T> KeysetPage<T> byId(Class<T> type, Criteria filter, String cursor, Integer limit, Set<String> fields) {
+        int size = pageSize(limit);
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter != null) criteria.add(filter);
+        if (cursor != null) criteria.add(Criteria.where("id").gt(decode(cursor)));
+
+        Query query = query(criteria).with(Sort.by(Sort.Direction.ASC, "id")).limit(size + 1);
+        project(query, type, fields, null);
+        List<T> found = mongoTemplate.find(query, type);
+
+        MongoPersistentEntity<?> entity = entity(type);
+        String next = null;
+        if (found.size() > size) {
+            found = found.subList(0, size);
+            next = encode(String.valueOf(entity.getIdentifierAccessor(found.get(size - 1)).getIdentifier()));
+        }
+        return new KeysetPage<>(found, next);
+    }
+
+    // Page in newest-first order of timeField (a LocalDateTime that is always set), ties broken by _id
+    public <T> KeysetPage<T> newestFirst(Class<T> type, Criteria filter, String timeField, String cursor, Integer limit,
+                                         Set<String> fields) {
+        int size = pageSize(limit);
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter != null) criteria.add(filter);
+        if (cursor != null) {
+            String[] key = decode(cursor).split("\\|", 2); // "time|id"
+            LocalDateTime time;
+            try {
+                time = LocalDateTime.parse(key[0]);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor.");
+            }
+            if (key.length != 2) throw new IllegalArgumentException("Invalid cursor.");
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where(timeField).lt(time),
+                    Criteria.where(timeField).is(time).and("id").lt(key[1])));
+        }
+
+        Query query = query(criteria).with(Sort.by(Sort.Direction.DESC, timeField, "id")).limit(size + 1);
+        project(query, type, fields, timeField);
+        List<T> found = mongoTemplate.find(query, type);
+
+        MongoPersistentEntity<?> entity = entity(type);
+        String next = null;
+        if (found.size() > size) {
+            found = found.subList(0, size);
+            T last = found.get(size - 1);
+            PersistentPropertyAccessor<T> accessor = entity.getPropertyAccessor(last);
+            Object time = accessor.getProperty(entity.getRequiredPersistentProperty(timeField));
+            next = encode(time + "|" + entity.getIdentifierAccessor(last).getIdentifier());
+        }
+        return new KeysetPage<>(found, next);
+    }
+
+    // Requested JSON fields ("id,location,fillLevel"), checked against what the type serializes; null = all fields
+    public Set<String> parseFields(Class<?> type, String fields) {
+        if (fields == null || fields.isBlank()) return null;
+        Set<String> allowed = jsonFields.computeIfAbsent(type, this::serializedFields);
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) continue;
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown field '" + name + "'. Allowed: " + String.join(",", allowed) + ".");
+            }
+            selected.add(name);
+        }
+        return selected.isEmpty() ? null : selected;
+    }
+
+    // The page with each item cut down to the selected fields (in the requested order), or unchanged when fields is null
+    public KeysetPage<?> select(KeysetPage<?> page, Set<String> fields) {
+        if (fields == null) return page;
+        List<Map<String, Object>> items = new ArrayList<>(page.items().size());
+        for (Object item : page.items()) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> json = objectMapper.convertValue(item, Map.class);
+            Map<String, Object> selected = new LinkedHashMap<>();
+            for (String field : fields) selected.put(field, json.get(field));
+            items.add(selected);
+        }
+        return new KeysetPage<>(items, page.nextCursor());
+    }
+
+    public int pageSize(Integer limit) {
+        if (limit == null) return defaultPageSize;
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize + ".");
+        }
+        return limit;
+    }
+
+    // --- Helpers ---
+    private static Query query(List<Criteria> criteria) {
+        if (criteria.isEmpty()) return new Query();
+        if (criteria.size() == 1) return Query.query(criteria.get(0));
+        return Query.query(new Criteria().andOperator(criteria));
+    }
+
+    // Only stored properties can be projected; the id and sort key always come along for the next cursor
+    private void project(Query query, Class<?> type, Set<String> fields, String sortField) {
+        if (fields == null) return;
+        MongoPersistentEntity<?> entity = entity(type);
+        query.fields().include("id");
+        if (sortField != null) query.fields().include(sortField);
+        for (String field : fields) {
+            if (entity.getPersistentProperty(field) != null) query.fields().include(field);
+        }
+    }
+
+    private MongoPersistentEntity<?> entity(Class<?> type) {
+        return mongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+    }
+
+    private Set<String> serializedFields(Class<?> type) {
+        return objectMapper.getSerializationConfig().introspect(objectMapper.constructType(type)).findProperties()
+                .stream().map(BeanPropertyDefinition::getName)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decode(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor.");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.smartwaste.adminbackend.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
+import org.springframework.data.mongodb.core.mapping.Document;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+// Creates the indexes declared on the models (@Indexed, @CompoundIndex, @GeoSpatialIndexed) once
+// the application is up, on a background thread that retries until Mongo answers. Spring's
+// auto-index-creation would do it while the context starts and fail startup without a database.
+// Creating an index that already exists is a no-op.
+@Component
+public class MongoIndexInitializer {
+
+    private static final long RETRY_SECONDS = 5;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MongoMappingContext mappingContext;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexesInBackground() {
+        Thread thread = new Thread(this::createIndexesOrRetry, "mongo-index-initializer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void createIndexesOrRetry() {
+        while (true) {
+            try {
+                createIndexes();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Mongo indexes not created, retrying in " + RETRY_SECONDS + " s: " + e.getMessage());
+            }
+            try {
+                TimeUnit.SECONDS.sleep(RETRY_SECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void createIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mappingContext);
+        int created = 0;
+        for (MongoPersistentEntity<?> entity : mappingContext.getPersistentEntities()) {
+            if (!entity.isAnnotationPresent(Document.class)) continue;
+            IndexOperations indexOps = mongoTemplate.indexOps(entity.getType());
+            for (IndexDefinition index : resolver.resolveIndexFor(entity.getType())) {
+                indexOps.ensureIndex(index);
+                created++;
+            }
+        }
+        System.out.println("Ensured " + created + " Mongo indexes.");
+    }
+}
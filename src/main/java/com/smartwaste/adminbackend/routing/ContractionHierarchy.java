@@ -0,0 +1,762 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+// Contraction hierarchy over a RoadNetwork for fast point-to-point shortest path queries.
+//
+// Preprocessing contracts nodes one by one (cheapest first), adding shortcut edges so that
+// distances are preserved. A query is then a small bidirectional Dijkstra that only ever
+// moves "up" the hierarchy. Shortcuts remember the node they bypass, so the winning path
+// can be unpacked back into real road nodes for drawing the route.
+//
+// The finished hierarchy is written to a flat binary file and queried straight from a
+// read-only memory-mapped view of that file.
+public class ContractionHierarchy {
+
+    private static final int MAGIC = 0x43485231; // "CHR1"
+    private static final int HEADER_BYTES = 16;
+    private static final int WITNESS_SETTLE_LIMIT = 500; // Settled nodes per witness search while contracting
+    private static final int PRIORITY_SETTLE_LIMIT = 50; // Cheaper estimate used for node ordering
+    private static final double GRID_CELL_DEGREES = 0.01; // ~1.1 km snapping cells
+
+    private final int nodeCount;
+    private final DoubleBuffer latitudes;
+    private final DoubleBuffer longitudes;
+    // Edges from each node to higher-ranked nodes (forward search)
+    private final IntBuffer upOffsets;
+    private final IntBuffer upTargets;
+    private final IntBuffer upMiddles;
+    private final DoubleBuffer upWeights;
+    // Edges arriving at each node from higher-ranked nodes (backward search)
+    private final IntBuffer downOffsets;
+    private final IntBuffer downSources;
+    private final IntBuffer downMiddles;
+    private final DoubleBuffer downWeights;
+
+    // Snapping grid: node indices sorted by grid cell
+    private final int minRow;
+    private final int minCol;
+    private final int rows;
+    private final int cols;
+    private final int[] cellOfEntry;
+    private final int[] nodeOfEntry;
+
+    private final ThreadLocal<QueryScratch> scratch;
+
+    private ContractionHierarchy(int nodeCount, DoubleBuffer latitudes, DoubleBuffer longitudes,
+                                 IntBuffer upOffsets, IntBuffer upTargets, IntBuffer upMiddles, DoubleBuffer upWeights,
+                                 IntBuffer downOffsets, IntBuffer downSources, IntBuffer downMiddles, DoubleBuffer downWeights) {
+        this.nodeCount = nodeCount;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.upOffsets = upOffsets;
+        this.upTargets = upTargets;
+        this.upMiddles = upMiddles;
+        this.upWeights = upWeights;
+        this.downOffsets = downOffsets;
+        this.downSources = downSources;
+        this.downMiddles = downMiddles;
+        this.downWeights = downWeights;
+        this.scratch = ThreadLocal.withInitial(() -> new QueryScratch(nodeCount));
+
+        // Build the snapping grid
+        int lowRow = Integer.MAX_VALUE, highRow = Integer.MIN_VALUE, lowCol = Integer.MAX_VALUE, highCol = Integer.MIN_VALUE;
+        for (int v = 0; v < nodeCount; v++) {
+            int row = row(latitudes.get(v));
+            int col = col(longitudes.get(v));
+            lowRow = Math.min(lowRow, row);
+            highRow = Math.max(highRow, row);
+            lowCol = Math.min(lowCol, col);
+            highCol = Math.max(highCol, col);
+        }
+        this.minRow = nodeCount > 0 ? lowRow : 0;
+        this.minCol = nodeCount > 0 ? lowCol : 0;
+        this.rows = nodeCount > 0 ? highRow - lowRow + 1 : 0;
+        this.cols = nodeCount > 0 ? highCol - lowCol + 1 : 0;
+
+        long[] entries = new long[nodeCount];
+        for (int v = 0; v < nodeCount; v++) {
+            long cell = cellIndex(row(latitudes.get(v)) - minRow, col(longitudes.get(v)) - minCol);
+            entries[v] = (cell << 32) | v;
+        }
+        Arrays.sort(entries);
+        this.cellOfEntry = new int[nodeCount];
+        this.nodeOfEntry = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            cellOfEntry[i] = (int) (entries[i] >>> 32);
+            nodeOfEntry[i] = (int) entries[i];
+        }
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public double latitude(int node) { return latitudes.get(node); }
+    public double longitude(int node) { return longitudes.get(node); }
+
+    // =====================================================
+    // QUERIES
+    // =====================================================
+
+    // Shortest road distance in km, or +Infinity if target cannot be reached
+    public double distance(int source, int target) {
+        QueryScratch s = scratch.get();
+        try {
+            search(source, target, s);
+            return s.best;
+        } finally {
+            s.reset();
+        }
+    }
+
+    // Road nodes from source to target (inclusive), shortcuts unpacked. Empty if unreachable.
+    public int[] path(int source, int target) {
+        QueryScratch s = scratch.get();
+        try {
+            search(source, target, s);
+            if (s.meet < 0) return new int[0];
+
+            IntList nodes = new IntList();
+            nodes.add(source);
+            // Forward half: source -> meet, collected backwards then replayed in order
+            IntList forwardEdges = new IntList();
+            for (int v = s.meet; v != source; v = s.forwardPredecessor[v]) {
+                forwardEdges.add(v);
+            }
+            for (int i = forwardEdges.size - 1; i >= 0; i--) {
+                int v = forwardEdges.values[i];
+                int edge = s.forwardEdge[v];
+                unpack(s.forwardPredecessor[v], v, upMiddles.get(edge), nodes);
+            }
+            // Backward half: meet -> target
+            for (int v = s.meet; v != target; v = s.backwardPredecessor[v]) {
+                int edge = s.backwardEdge[v];
+                unpack(v, s.backwardPredecessor[v], downMiddles.get(edge), nodes);
+            }
+            return Arrays.copyOf(nodes.values, nodes.size);
+        } finally {
+            s.reset();
+        }
+    }
+
+    // Many-to-many distances (row-major sources x targets) with the bucket method: one upward
+    // search per target fills buckets, then one upward search per source scans them.
+    // Costs |sources| + |targets| searches instead of |sources| x |targets| point queries.
+    public double[] distanceTable(int[] sources, int[] targets) {
+        // Backward searches, in parallel; each yields (node, distance) pairs for its target
+        double[][] bucketDistances = new double[targets.length][];
+        int[][] bucketNodes = new int[targets.length][];
+        IntStream.range(0, targets.length).parallel().forEach(j -> {
+            QueryScratch s = scratch.get();
+            try {
+                IntList settled = upwardSearch(targets[j], false, s);
+                bucketNodes[j] = Arrays.copyOf(settled.values, settled.size);
+                bucketDistances[j] = new double[settled.size];
+                for (int k = 0; k < settled.size; k++) {
+                    bucketDistances[j][k] = s.backwardDistance[settled.values[k]];
+                }
+            } finally {
+                s.reset();
+            }
+        });
+
+        // Group bucket entries by node (CSR layout) so forward searches can look them up
+        int[] bucketOffsets = new int[nodeCount + 1];
+        for (int[] nodes : bucketNodes) {
+            for (int v : nodes) bucketOffsets[v + 1]++;
+        }
+        for (int v = 0; v < nodeCount; v++) bucketOffsets[v + 1] += bucketOffsets[v];
+        int[] entryTarget = new int[bucketOffsets[nodeCount]];
+        double[] entryDistance = new double[bucketOffsets[nodeCount]];
+        int[] next = Arrays.copyOf(bucketOffsets, nodeCount);
+        for (int j = 0; j < targets.length; j++) {
+            for (int k = 0; k < bucketNodes[j].length; k++) {
+                int slot = next[bucketNodes[j][k]]++;
+                entryTarget[slot] = j;
+                entryDistance[slot] = bucketDistances[j][k];
+            }
+        }
+
+        // Forward searches, one table row each
+        double[] table = new double[sources.length * targets.length];
+        Arrays.fill(table, Double.POSITIVE_INFINITY);
+        IntStream.range(0, sources.length).parallel().forEach(i -> {
+            QueryScratch s = scratch.get();
+            try {
+                IntList settled = upwardSearch(sources[i], true, s);
+                int row = i * targets.length;
+                for (int k = 0; k < settled.size; k++) {
+                    int v = settled.values[k];
+                    double forward = s.forwardDistance[v];
+                    for (int b = bucketOffsets[v]; b < bucketOffsets[v + 1]; b++) {
+                        double total = forward + entryDistance[b];
+                        if (total < table[row + entryTarget[b]]) table[row + entryTarget[b]] = total;
+                    }
+                }
+            } finally {
+                s.reset();
+            }
+        });
+        return table;
+    }
+
+    // Exhaustive search of the upward graph (forward) or reversed downward graph (backward)
+    private IntList upwardSearch(int start, boolean forward, QueryScratch s) {
+        IntList settled = new IntList();
+        IndexedMinHeap queue = forward ? s.forwardQueue : s.backwardQueue;
+        double[] distance = forward ? s.forwardDistance : s.backwardDistance;
+        IntBuffer offsets = forward ? upOffsets : downOffsets;
+        IntBuffer neighbours = forward ? upTargets : downSources;
+        DoubleBuffer weights = forward ? upWeights : downWeights;
+
+        if (forward) s.setForward(start, 0.0, -1, -1);
+        else s.setBackward(start, 0.0, -1, -1);
+        queue.insertOrDecrease(start, 0.0);
+        while (!queue.isEmpty()) {
+            int u = queue.poll();
+            settled.add(u);
+            for (int e = offsets.get(u); e < offsets.get(u + 1); e++) {
+                int x = neighbours.get(e);
+                double candidate = distance[u] + weights.get(e);
+                if (candidate < distance[x]) {
+                    if (forward) s.setForward(x, candidate, u, e);
+                    else s.setBackward(x, candidate, u, e);
+                    queue.insertOrDecrease(x, candidate);
+                }
+            }
+        }
+        return settled;
+    }
+
+    // Closest road node to a coordinate (grid ring search)
+    public int nearestNode(double latitude, double longitude) {
+        if (nodeCount == 0) return -1;
+        int centerRow = clamp(row(latitude) - minRow, rows);
+        int centerCol = clamp(col(longitude) - minCol, cols);
+        double cellKm = GRID_CELL_DEGREES * 111.32 * Math.cos(Math.toRadians(Math.min(Math.abs(latitude), 85.0)));
+
+        int best = -1;
+        double bestDistance = Double.MAX_VALUE;
+        int maxRing = Math.max(rows, cols);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            for (int r = centerRow - ring; r <= centerRow + ring; r++) {
+                if (r < 0 || r >= rows) continue;
+                boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                for (int c = centerCol - ring; c <= centerCol + ring; c += edgeRow ? 1 : 2 * Math.max(ring, 1)) {
+                    if (c < 0 || c >= cols) continue;
+                    int cell = (int) cellIndex(r, c);
+                    for (int i = firstEntry(cell); i < nodeCount && cellOfEntry[i] == cell; i++) {
+                        int v = nodeOfEntry[i];
+                        double d = approximateKm(latitude, longitude, latitudes.get(v), longitudes.get(v));
+                        if (d < bestDistance) {
+                            bestDistance = d;
+                            best = v;
+                        }
+                    }
+                }
+            }
+            // Anything in the next ring is at least `ring` whole cells away
+            if (best >= 0 && bestDistance <= ring * cellKm) break;
+        }
+        return best;
+    }
+
+    private void search(int source, int target, QueryScratch s) {
+        s.setForward(source, 0.0, -1, -1);
+        s.setBackward(target, 0.0, -1, -1);
+        s.forwardQueue.insertOrDecrease(source, 0.0);
+        s.backwardQueue.insertOrDecrease(target, 0.0);
+
+        while (true) {
+            boolean progressed = false;
+            if (!s.forwardQueue.isEmpty() && s.forwardQueue.key(s.forwardQueue.peek()) < s.best) {
+                int u = s.forwardQueue.poll();
+                s.meetAt(u);
+                for (int e = upOffsets.get(u); e < upOffsets.get(u + 1); e++) {
+                    int x = upTargets.get(e);
+                    double candidate = s.forwardDistance[u] + upWeights.get(e);
+                    if (candidate < s.forwardDistance[x]) {
+                        s.setForward(x, candidate, u, e);
+                        s.forwardQueue.insertOrDecrease(x, candidate);
+                    }
+                }
+                progressed = true;
+            }
+            if (!s.backwardQueue.isEmpty() && s.backwardQueue.key(s.backwardQueue.peek()) < s.best) {
+                int u = s.backwardQueue.poll();
+                s.meetAt(u);
+                for (int e = downOffsets.get(u); e < downOffsets.get(u + 1); e++) {
+                    int x = downSources.get(e);
+                    double candidate = s.backwardDistance[u] + downWeights.get(e);
+                    if (candidate < s.backwardDistance[x]) {
+                        s.setBackward(x, candidate, u, e);
+                        s.backwardQueue.insertOrDecrease(x, candidate);
+                    }
+                }
+                progressed = true;
+            }
+            if (!progressed) break;
+        }
+    }
+
+    // Expands edge from -> to (bypassing `middle`, or a real road edge if middle is -1)
+    // and appends every node after `from` to the list
+    private void unpack(int from, int to, int middle, IntList nodes) {
+        IntList stack = new IntList();
+        stack.add(from);
+        stack.add(to);
+        stack.add(middle);
+        while (stack.size > 0) {
+            int m = stack.values[--stack.size];
+            int b = stack.values[--stack.size];
+            int a = stack.values[--stack.size];
+            if (m < 0) {
+                nodes.add(b);
+                continue;
+            }
+            // The bypassed node has the lowest rank: a -> m is stored at m (down), m -> b at m (up).
+            // Push the second half first so the first half is expanded first.
+            stack.add(m);
+            stack.add(b);
+            stack.add(upMiddleBetween(m, b));
+            stack.add(a);
+            stack.add(m);
+            stack.add(downMiddleBetween(m, a));
+        }
+    }
+
+    private int upMiddleBetween(int node, int target) {
+        for (int e = upOffsets.get(node); e < upOffsets.get(node + 1); e++) {
+            if (upTargets.get(e) == target) return upMiddles.get(e);
+        }
+        throw new IllegalStateException("Missing up edge " + node + " -> " + target);
+    }
+
+    private int downMiddleBetween(int node, int source) {
+        for (int e = downOffsets.get(node); e < downOffsets.get(node + 1); e++) {
+            if (downSources.get(e) == source) return downMiddles.get(e);
+        }
+        throw new IllegalStateException("Missing down edge " + source + " -> " + node);
+    }
+
+    // =====================================================
+    // PREPROCESSING
+    // =====================================================
+    public static ContractionHierarchy build(RoadNetwork network) {
+        return new Preprocessor(network).run();
+    }
+
+    private static class Preprocessor {
+        private final RoadNetwork network;
+        private final int n;
+        private final List<List<Arc>> out = new ArrayList<>();
+        private final List<List<Arc>> in = new ArrayList<>();
+        private final boolean[] contracted;
+        private final int[] rank;
+        private final int[] deletedNeighbours;
+        private final int[] depth; // Longest chain of contracted nodes below each node
+
+        // Witness search scratch space
+        private final double[] witnessDistance;
+        private final IntList witnessTouched = new IntList();
+        private final IndexedMinHeap witnessQueue;
+
+        Preprocessor(RoadNetwork network) {
+            this.network = network;
+            this.n = network.nodeCount();
+            this.contracted = new boolean[n];
+            this.rank = new int[n];
+            this.deletedNeighbours = new int[n];
+            this.depth = new int[n];
+            this.witnessDistance = new double[n];
+            this.witnessQueue = new IndexedMinHeap(n);
+            Arrays.fill(witnessDistance, Double.POSITIVE_INFINITY);
+            for (int v = 0; v < n; v++) {
+                out.add(new ArrayList<>());
+                in.add(new ArrayList<>());
+            }
+            CsrGraph graph = network.graph();
+            for (int v = 0; v < n; v++) {
+                for (int e = graph.firstEdge(v); e < graph.endEdge(v); e++) {
+                    addArc(v, graph.target(e), graph.weight(e), -1);
+                }
+            }
+        }
+
+        ContractionHierarchy run() {
+            IndexedMinHeap queue = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                queue.insertOrDecrease(v, priority(v));
+            }
+            int order = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                // Lazy update: if v got more expensive than the next candidate, try again later
+                double current = priority(v);
+                if (!queue.isEmpty() && current > queue.key(queue.peek())) {
+                    queue.insertOrDecrease(v, current);
+                    continue;
+                }
+                for (long[] shortcut : shortcuts(v, WITNESS_SETTLE_LIMIT)) {
+                    addArc((int) shortcut[0], (int) shortcut[1], Double.longBitsToDouble(shortcut[2]), v);
+                }
+                contracted[v] = true;
+                rank[v] = order++;
+
+                // Neighbours lost an edge and may have gained shortcuts: refresh their priority
+                for (Arc arc : out.get(v)) touchNeighbour(arc.to, v, queue);
+                for (Arc arc : in.get(v)) touchNeighbour(arc.from, v, queue);
+            }
+            return export();
+        }
+
+        private void touchNeighbour(int neighbour, int contractedNode, IndexedMinHeap queue) {
+            if (contracted[neighbour]) return;
+            deletedNeighbours[neighbour]++;
+            depth[neighbour] = Math.max(depth[neighbour], depth[contractedNode] + 1);
+            queue.update(neighbour, priority(neighbour));
+        }
+
+        // Edge difference + contracted neighbours + depth: keeps the hierarchy small, flat and evenly spread
+        private double priority(int v) {
+            int degree = 0;
+            for (Arc arc : out.get(v)) if (!contracted[arc.to]) degree++;
+            for (Arc arc : in.get(v)) if (!contracted[arc.from]) degree++;
+            return 2.0 * (shortcuts(v, PRIORITY_SETTLE_LIMIT).size() - degree) + deletedNeighbours[v] + depth[v];
+        }
+
+        // Shortcuts {from, to, weightBits} needed if v were removed now
+        private List<long[]> shortcuts(int v, int settleLimit) {
+            List<long[]> result = new ArrayList<>();
+            for (Arc incoming : in.get(v)) {
+                int u = incoming.from;
+                if (contracted[u]) continue;
+
+                double maxOutgoing = -1;
+                for (Arc outgoing : out.get(v)) {
+                    if (!contracted[outgoing.to] && outgoing.to != u) {
+                        maxOutgoing = Math.max(maxOutgoing, outgoing.weight);
+                    }
+                }
+                if (maxOutgoing < 0) continue; // No neighbour on the other side
+
+                witnessSearch(u, v, incoming.weight + maxOutgoing, settleLimit);
+                for (Arc outgoing : out.get(v)) {
+                    int x = outgoing.to;
+                    if (contracted[x] || x == u) continue;
+                    double via = incoming.weight + outgoing.weight;
+                    if (witnessDistance[x] > via) {
+                        result.add(new long[]{u, x, Double.doubleToLongBits(via)});
+                    }
+                }
+                resetWitness();
+            }
+            return result;
+        }
+
+        // Bounded Dijkstra from u that avoids v and already contracted nodes
+        private void witnessSearch(int u, int avoid, double maxDistance, int settleLimit) {
+            witnessDistance[u] = 0.0;
+            witnessTouched.add(u);
+            witnessQueue.insertOrDecrease(u, 0.0);
+            int settled = 0;
+            while (!witnessQueue.isEmpty() && settled < settleLimit) {
+                int current = witnessQueue.poll();
+                if (witnessDistance[current] > maxDistance) break;
+                settled++;
+                for (Arc arc : out.get(current)) {
+                    int x = arc.to;
+                    if (x == avoid || contracted[x]) continue;
+                    double candidate = witnessDistance[current] + arc.weight;
+                    if (candidate < witnessDistance[x]) {
+                        if (witnessDistance[x] == Double.POSITIVE_INFINITY) witnessTouched.add(x);
+                        witnessDistance[x] = candidate;
+                        witnessQueue.insertOrDecrease(x, candidate);
+                    }
+                }
+            }
+        }
+
+        private void resetWitness() {
+            for (int i = 0; i < witnessTouched.size; i++) {
+                witnessDistance[witnessTouched.values[i]] = Double.POSITIVE_INFINITY;
+            }
+            witnessTouched.size = 0;
+            witnessQueue.clear();
+        }
+
+        // Adds from -> to, or lowers the weight of an existing edge between the same nodes
+        private void addArc(int from, int to, double weight, int middle) {
+            if (from == to) return;
+            for (Arc arc : out.get(from)) {
+                if (arc.to == to) {
+                    if (weight < arc.weight) {
+                        arc.weight = weight;
+                        arc.middle = middle;
+                    }
+                    return;
+                }
+            }
+            Arc arc = new Arc(from, to, weight, middle);
+            out.get(from).add(arc);
+            in.get(to).add(arc);
+        }
+
+        private ContractionHierarchy export() {
+            int[] upOffsets = new int[n + 1];
+            int[] downOffsets = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                for (Arc arc : out.get(v)) {
+                    if (rank[arc.from] < rank[arc.to]) upOffsets[arc.from + 1]++;
+                    else downOffsets[arc.to + 1]++;
+                }
+            }
+            for (int v = 0; v < n; v++) {
+                upOffsets[v + 1] += upOffsets[v];
+                downOffsets[v + 1] += downOffsets[v];
+            }
+            int upCount = upOffsets[n];
+            int downCount = downOffsets[n];
+            int[] upTargets = new int[upCount], upMiddles = new int[upCount];
+            double[] upWeights = new double[upCount];
+            int[] downSources = new int[downCount], downMiddles = new int[downCount];
+            double[] downWeights = new double[downCount];
+            int[] nextUp = Arrays.copyOf(upOffsets, n);
+            int[] nextDown = Arrays.copyOf(downOffsets, n);
+            for (int v = 0; v < n; v++) {
+                for (Arc arc : out.get(v)) {
+                    if (rank[arc.from] < rank[arc.to]) {
+                        int slot = nextUp[arc.from]++;
+                        upTargets[slot] = arc.to;
+                        upMiddles[slot] = arc.middle;
+                        upWeights[slot] = arc.weight;
+                    } else {
+                        int slot = nextDown[arc.to]++;
+                        downSources[slot] = arc.from;
+                        downMiddles[slot] = arc.middle;
+                        downWeights[slot] = arc.weight;
+                    }
+                }
+            }
+
+            double[] lat = new double[n];
+            double[] lon = new double[n];
+            for (int v = 0; v < n; v++) {
+                lat[v] = network.latitude(v);
+                lon[v] = network.longitude(v);
+            }
+            return new ContractionHierarchy(n, DoubleBuffer.wrap(lat), DoubleBuffer.wrap(lon),
+                    IntBuffer.wrap(upOffsets), IntBuffer.wrap(upTargets), IntBuffer.wrap(upMiddles), DoubleBuffer.wrap(upWeights),
+                    IntBuffer.wrap(downOffsets), IntBuffer.wrap(downSources), IntBuffer.wrap(downMiddles), DoubleBuffer.wrap(downWeights));
+        }
+    }
+
+    private static class Arc {
+        final int from;
+        final int to;
+        double weight;
+        int middle; // Bypassed node for shortcuts, -1 for real road edges
+
+        Arc(int from, int to, double weight, int middle) {
+            this.from = from;
+            this.to = to;
+            this.weight = weight;
+            this.middle = middle;
+        }
+    }
+
+    // =====================================================
+    // PERSISTENCE (flat binary file, read back memory-mapped)
+    // Layout: header | lat | lon | upWeights | downWeights | upOffsets | upTargets | upMiddles
+    //         | downOffsets | downSources | downMiddles   (doubles first so they stay 8-byte aligned)
+    // =====================================================
+    public void save(Path file) throws IOException {
+        int upCount = upTargets.limit();
+        int downCount = downSources.limit();
+        long size = HEADER_BYTES
+                + 8L * (2L * nodeCount + upCount + downCount)
+                + 4L * (2L * (nodeCount + 1) + 2L * upCount + 2L * downCount);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(MAGIC).putInt(nodeCount).putInt(upCount).putInt(downCount);
+            putAll(buffer, latitudes);
+            putAll(buffer, longitudes);
+            putAll(buffer, upWeights);
+            putAll(buffer, downWeights);
+            putAll(buffer, upOffsets);
+            putAll(buffer, upTargets);
+            putAll(buffer, upMiddles);
+            putAll(buffer, downOffsets);
+            putAll(buffer, downSources);
+            putAll(buffer, downMiddles);
+            buffer.force();
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static ContractionHierarchy load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a contraction hierarchy file: " + file);
+            }
+            int n = buffer.getInt(4);
+            int upCount = buffer.getInt(8);
+            int downCount = buffer.getInt(12);
+
+            int[] position = {HEADER_BYTES};
+            DoubleBuffer lat = doubles(buffer, position, n);
+            DoubleBuffer lon = doubles(buffer, position, n);
+            DoubleBuffer upWeights = doubles(buffer, position, upCount);
+            DoubleBuffer downWeights = doubles(buffer, position, downCount);
+            IntBuffer upOffsets = ints(buffer, position, n + 1);
+            IntBuffer upTargets = ints(buffer, position, upCount);
+            IntBuffer upMiddles = ints(buffer, position, upCount);
+            IntBuffer downOffsets = ints(buffer, position, n + 1);
+            IntBuffer downSources = ints(buffer, position, downCount);
+            IntBuffer downMiddles = ints(buffer, position, downCount);
+            return new ContractionHierarchy(n, lat, lon, upOffsets, upTargets, upMiddles, upWeights,
+                    downOffsets, downSources, downMiddles, downWeights);
+        }
+    }
+
+    private static DoubleBuffer doubles(ByteBuffer buffer, int[] position, int count) {
+        DoubleBuffer view = buffer.slice(position[0], count * 8).asDoubleBuffer();
+        position[0] += count * 8;
+        return view;
+    }
+
+    private static IntBuffer ints(ByteBuffer buffer, int[] position, int count) {
+        IntBuffer view = buffer.slice(position[0], count * 4).asIntBuffer();
+        position[0] += count * 4;
+        return view;
+    }
+
+    private static void putAll(ByteBuffer buffer, DoubleBuffer values) {
+        for (int i = 0; i < values.limit(); i++) buffer.putDouble(values.get(i));
+    }
+
+    private static void putAll(ByteBuffer buffer, IntBuffer values) {
+        for (int i = 0; i < values.limit(); i++) buffer.putInt(values.get(i));
+    }
+
+    // =====================================================
+    // Helpers
+    // =====================================================
+    private static int row(double latitude) { return (int) Math.floor(latitude / GRID_CELL_DEGREES); }
+    private static int col(double longitude) { return (int) Math.floor(longitude / GRID_CELL_DEGREES); }
+    private static int clamp(int value, int size) { return Math.max(0, Math.min(size - 1, value)); }
+    private long cellIndex(int row, int col) { return (long) row * cols + col; }
+
+    // First entry of a cell in the sorted grid arrays (or where it would be)
+    private int firstEntry(int cell) {
+        int low = 0, high = nodeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (cellOfEntry[mid] < cell) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Equirectangular approximation: accurate to well under 1% at city scale and far cheaper than Haversine
+    private static double approximateKm(double lat1, double lon1, double lat2, double lon2) {
+        double x = Math.toRadians(lon2 - lon1) * Math.cos(Math.toRadians((lat1 + lat2) / 2));
+        double y = Math.toRadians(lat2 - lat1);
+        return Math.sqrt(x * x + y * y) * 6371.0;
+    }
+
+    // Growable int array
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+    }
+
+    // Per-thread query state; only touched entries are reset between queries
+    private static class QueryScratch {
+        final double[] forwardDistance;
+        final double[] backwardDistance;
+        final int[] forwardPredecessor;
+        final int[] backwardPredecessor;
+        final int[] forwardEdge;
+        final int[] backwardEdge;
+        final IndexedMinHeap forwardQueue;
+        final IndexedMinHeap backwardQueue;
+        final IntList touched = new IntList();
+        double best = Double.POSITIVE_INFINITY;
+        int meet = -1;
+
+        QueryScratch(int n) {
+            forwardDistance = new double[n];
+            backwardDistance = new double[n];
+            forwardPredecessor = new int[n];
+            backwardPredecessor = new int[n];
+            forwardEdge = new int[n];
+            backwardEdge = new int[n];
+            forwardQueue = new IndexedMinHeap(n);
+            backwardQueue = new IndexedMinHeap(n);
+            Arrays.fill(forwardDistance, Double.POSITIVE_INFINITY);
+            Arrays.fill(backwardDistance, Double.POSITIVE_INFINITY);
+        }
+
+        void setForward(int node, double distance, int predecessor, int edge) {
+            touch(node);
+            forwardDistance[node] = distance;
+            forwardPredecessor[node] = predecessor;
+            forwardEdge[node] = edge;
+        }
+
+        void setBackward(int node, double distance, int predecessor, int edge) {
+            touch(node);
+            backwardDistance[node] = distance;
+            backwardPredecessor[node] = predecessor;
+            backwardEdge[node] = edge;
+        }
+
+        void meetAt(int node) {
+            double total = forwardDistance[node] + backwardDistance[node];
+            if (total < best) {
+                best = total;
+                meet = node;
+            }
+        }
+
+        private void touch(int node) {
+            if (forwardDistance[node] == Double.POSITIVE_INFINITY && backwardDistance[node] == Double.POSITIVE_INFINITY) {
+                touched.add(node);
+            }
+        }
+
+        void reset() {
+            for (int i = 0; i < touched.size; i++) {
+                int v = touched.values[i];
+                forwardDistance[v] = Double.POSITIVE_INFINITY;
+                backwardDistance[v] = Double.POSITIVE_INFINITY;
+            }
+            touched.size = 0;
+            forwardQueue.clear();
+            backwardQueue.clear();
+            best = Double.POSITIVE_INFINITY;
+            meet = -1;
+        }
+    }
+}
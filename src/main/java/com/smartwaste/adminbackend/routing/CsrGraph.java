@@ -0,0 +1,77 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.util.Arrays;
+
+// Compact directed graph in compressed-sparse-row form.
+// Nodes are 0..nodeCount-1; the outgoing edges of node v are the entries
+// offsets[v] .. offsets[v + 1] - 1 of the targets/weights arrays.
+public class CsrGraph {
+
+    private final int nodeCount;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+
+    private CsrGraph(int nodeCount, int[] offsets, int[] targets, double[] weights) {
+        this.nodeCount = nodeCount;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public int edgeCount() { return targets.length; }
+    public int firstEdge(int node) { return offsets[node]; }
+    public int endEdge(int node) { return offsets[node + 1]; }
+    public int target(int edge) { return targets[edge]; }
+    public double weight(int edge) { return weights[edge]; }
+
+    // Collects edges in any order, then lays them out by source node with a counting sort
+    public static class Builder {
+        private final int nodeCount;
+        private int[] from = new int[16];
+        private int[] to = new int[16];
+        private double[] weight = new double[16];
+        private int size;
+
+        public Builder(int nodeCount) {
+            this.nodeCount = nodeCount;
+        }
+
+        public Builder addEdge(int source, int target, double edgeWeight) {
+            if (source < 0 || source >= nodeCount || target < 0 || target >= nodeCount) {
+                throw new IllegalArgumentException("Edge " + source + " -> " + target + " is outside the graph.");
+            }
+            if (size == from.length) {
+                int capacity = size * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+            }
+            from[size] = source;
+            to[size] = target;
+            weight[size] = edgeWeight;
+            size++;
+            return this;
+        }
+
+        public CsrGraph build() {
+            int[] offsets = new int[nodeCount + 1];
+            for (int e = 0; e < size; e++) {
+                offsets[from[e] + 1]++;
+            }
+            for (int v = 0; v < nodeCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] next = Arrays.copyOf(offsets, nodeCount);
+            int[] targets = new int[size];
+            double[] weights = new double[size];
+            for (int e = 0; e < size; e++) {
+                int slot = next[from[e]]++;
+                targets[slot] = to[e];
+                weights[slot] = weight[e];
+            }
+            return new CsrGraph(nodeCount, offsets, targets, weights);
+        }
+    }
+}
@@ -1,58 +1,86 @@
 package com.smartwaste.adminbackend.routing;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 // This is the algorithm implementation
 public class Dijkstra {
 
-    public static Graph calculateShortestPathFromSource(Graph graph, Node source) {
-        source.setDistance(0.0);
-
-        Set<Node> settledNodes = new HashSet<>();
-        Set<Node> unsettledNodes = new HashSet<>();
-        unsettledNodes.add(source);
-
-        while (unsettledNodes.size() != 0) {
-            Node currentNode = getLowestDistanceNode(unsettledNodes);
-            unsettledNodes.remove(currentNode);
+    // Array-based Dijkstra: indexed binary heap for the frontier, predecessor array instead of
+    // per-node path copies. Nothing is allocated per edge relaxation.
+    public static ShortestPathTree shortestPaths(CsrGraph graph, int source) {
+        int n = graph.nodeCount();
+        double[] distance = new double[n];
+        int[] predecessor = new int[n];
+        Arrays.fill(distance, Double.POSITIVE_INFINITY);
+        Arrays.fill(predecessor, -1);
 
-            for (Map.Entry<Node, Double> adjacencyPair : currentNode.getAdjacentNodes().entrySet()) {
-                Node adjacentNode = adjacencyPair.getKey();
-                Double edgeWeight = adjacencyPair.getValue();
+        IndexedMinHeap frontier = new IndexedMinHeap(n);
+        distance[source] = 0.0;
+        frontier.insertOrDecrease(source, 0.0);
 
-                if (!settledNodes.contains(adjacentNode)) {
-                    calculateMinimumDistance(adjacentNode, edgeWeight, currentNode);
-                    unsettledNodes.add(adjacentNode);
+        while (!frontier.isEmpty()) {
+            int current = frontier.poll();
+            double currentDistance = distance[current];
+            for (int e = graph.firstEdge(current); e < graph.endEdge(current); e++) {
+                int next = graph.target(e);
+                double candidate = currentDistance + graph.weight(e);
+                if (candidate < distance[next]) {
+                    distance[next] = candidate;
+                    predecessor[next] = current;
+                    frontier.insertOrDecrease(next, candidate);
                 }
             }
-            settledNodes.add(currentNode);
         }
-        return graph;
+        return new ShortestPathTree(source, distance, predecessor);
     }
 
-    private static Node getLowestDistanceNode(Set<Node> unsettledNodes) {
-        Node lowestDistanceNode = null;
-        double lowestDistance = Double.MAX_VALUE;
-        for (Node node : unsettledNodes) {
-            if (node.getDistance() < lowestDistance) {
-                lowestDistance = node.getDistance();
-                lowestDistanceNode = node;
+    // Object-graph API kept as a thin adapter: the Node graph is indexed into a CsrGraph,
+    // solved with shortestPaths(), and the results are written back to each Node.
+    public static Graph calculateShortestPathFromSource(Graph graph, Node source) {
+        Map<Node, Integer> index = new IdentityHashMap<>();
+        List<Node> nodes = new ArrayList<>();
+        indexNode(source, index, nodes);
+        for (Node node : graph.getNodes()) {
+            indexNode(node, index, nodes);
+        }
+        for (int i = 0; i < nodes.size(); i++) { // Grows while adjacent nodes are discovered
+            for (Node adjacent : nodes.get(i).getAdjacentNodes().keySet()) {
+                indexNode(adjacent, index, nodes);
             }
         }
-        return lowestDistanceNode;
+
+        CsrGraph.Builder builder = new CsrGraph.Builder(nodes.size());
+        for (int i = 0; i < nodes.size(); i++) {
+            for (Map.Entry<Node, Double> adjacencyPair : nodes.get(i).getAdjacentNodes().entrySet()) {
+                builder.addEdge(i, index.get(adjacencyPair.getKey()), adjacencyPair.getValue());
+            }
+        }
+        ShortestPathTree tree = shortestPaths(builder.build(), index.get(source));
+
+        source.setDistance(0.0);
+        for (int i = 0; i < nodes.size(); i++) {
+            Node node = nodes.get(i);
+            if (node == source || !tree.isReachable(i)) continue;
+            node.setDistance(tree.distance(i));
+            int[] path = tree.pathTo(i);
+            LinkedList<Node> shortestPath = new LinkedList<>();
+            for (int k = 0; k < path.length - 1; k++) { // Node's path excludes the node itself
+                shortestPath.add(nodes.get(path[k]));
+            }
+            node.setShortestPath(shortestPath);
+        }
+        return graph;
     }
 
-    private static void calculateMinimumDistance(Node evaluationNode, Double edgeWeight, Node sourceNode) {
-        Double sourceDistance = sourceNode.getDistance();
-        if (sourceDistance + edgeWeight < evaluationNode.getDistance()) {
-            evaluationNode.setDistance(sourceDistance + edgeWeight);
-            LinkedList<Node> shortestPath = new LinkedList<>(sourceNode.getShortestPath());
-            shortestPath.add(sourceNode);
-            evaluationNode.setShortestPath(shortestPath);
+    private static void indexNode(Node node, Map<Node, Integer> index, List<Node> nodes) {
+        if (!index.containsKey(node)) {
+            index.put(node, nodes.size());
+            nodes.add(node);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package com.smartwaste.adminbackend.routing;
+
+import com.smartwaste.adminbackend.model.Bin;
+
+import java.util.List;
+
+// Distances (in km) between a fixed list of locations, computed once up front.
+// Stored row-major in a flat primitive array: entry (from, to) lives at from * size + to.
+public class DistanceMatrix {
+
+    private final int size;
+    private final double[] distances;
+
+    public DistanceMatrix(int size, double[] distances) {
+        if (distances.length != size * size) {
+            throw new IllegalArgumentException("Distance array does not match matrix size " + size);
+        }
+        this.size = size;
+        this.distances = distances;
+    }
+
+    // Straight-line (Haversine) matrix. Symmetric, so each pair is only calculated once.
+    public static DistanceMatrix haversine(List<Bin.Location> locations) {
+        int n = locations.size();
+        double[] distances = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                double d = Node.calculateDistance(locations.get(i), locations.get(j));
+                distances[i * n + j] = d;
+                distances[j * n + i] = d;
+            }
+        }
+        return new DistanceMatrix(n, distances);
+    }
+
+    public double get(int from, int to) {
+        return distances[from * size + to];
+    }
+
+    public int size() {
+        return size;
+    }
+}
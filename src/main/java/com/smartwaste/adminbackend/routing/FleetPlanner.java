@@ -0,0 +1,393 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Capacitated multi-truck planner (CVRP) over a shared DistanceMatrix.
+//
+// Matrix layout expected by this class:
+//   0                 = depot (every route ends here)
+//   1 .. binCount     = bins (bin k is matrix index k + 1)
+//   binCount + 1 ...  = truck start positions (truck r is matrix index binCount + 1 + r)
+//
+// Steps: Clarke-Wright savings construction -> routes assigned to trucks by capacity ->
+// inter-route relocate/swap moves -> per-route 2-opt/Or-opt. Heavy loops run on the given ForkJoinPool.
+public class FleetPlanner {
+
+    private static final double EPSILON = 1e-9;
+    private static final int SAVINGS_NEIGHBOURS = 40; // Only pair each bin with its closest bins
+
+    private final DistanceMatrix matrix;
+    private final double[] demands;
+    private final double[] capacities;
+    private final ForkJoinPool pool;
+    private final long timeBudgetMillis;
+    private final int binCount;
+    private final int truckCount;
+
+    public FleetPlanner(DistanceMatrix matrix, double[] demands, double[] capacities, ForkJoinPool pool, long timeBudgetMillis) {
+        if (matrix.size() != 1 + demands.length + capacities.length) {
+            throw new IllegalArgumentException("Distance matrix must hold depot, bins and truck starts.");
+        }
+        this.matrix = matrix;
+        this.demands = demands;
+        this.capacities = capacities;
+        this.pool = pool;
+        this.timeBudgetMillis = timeBudgetMillis;
+        this.binCount = demands.length;
+        this.truckCount = capacities.length;
+    }
+
+    // Result: routes[r] = matrix indices truck start -> bins -> depot (null if truck r is unused)
+    public static class Result {
+        public final int[][] routes;
+        public final double[] loads;
+        public final int[] unassignedBins; // Bin positions (0-based, not matrix indices)
+
+        Result(int[][] routes, double[] loads, int[] unassignedBins) {
+            this.routes = routes;
+            this.loads = loads;
+            this.unassignedBins = unassignedBins;
+        }
+    }
+
+    public Result solve() {
+        long deadline = System.nanoTime() + timeBudgetMillis * 1_000_000L;
+
+        List<Route> constructed = buildSavingsRoutes();
+        Route[] routes = assignToTrucks(constructed);
+        List<Integer> unassigned = collectUnassigned(routes);
+        insertUnassigned(routes, unassigned);
+
+        improveBetweenRoutes(routes, deadline);
+        insertUnassigned(routes, unassigned); // Moves may have freed capacity
+
+        // Final intra-route polish, independent per truck so it parallelises cleanly
+        long remainingMillis = Math.max(0, (deadline - System.nanoTime()) / 1_000_000L);
+        int[][] paths = new int[truckCount][];
+        pool.submit(() -> IntStream.range(0, truckCount).parallel().forEach(r -> {
+            if (routes[r].size == 0) return;
+            int[] path = routes[r].toPath(truckNode(r));
+            paths[r] = new TourOptimizer(matrix, remainingMillis).improve(path);
+        })).join();
+
+        double[] loads = new double[truckCount];
+        for (int r = 0; r < truckCount; r++) {
+            loads[r] = routes[r].load;
+        }
+        return new Result(paths, loads, unassigned.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    // ---------------------------------------------------------
+    // CONSTRUCTION: Clarke-Wright savings
+    // ---------------------------------------------------------
+    private List<Route> buildSavingsRoutes() {
+        double maxCapacity = Arrays.stream(capacities).max().orElse(0.0);
+
+        // Savings s(i, j) = d(i, depot) + d(depot, j) - d(i, j) for each bin and its nearest neighbours
+        Saving[] savings = pool.submit(() -> IntStream.range(0, binCount).parallel()
+                .mapToObj(this::savingsFor)
+                .flatMap(List::stream)
+                .toArray(Saving[]::new)).join();
+        Arrays.parallelSort(savings, Comparator.comparingDouble((Saving s) -> s.value).reversed());
+
+        // Every bin that fits any truck starts in its own route
+        Route[] routeOf = new Route[binCount];
+        for (int b = 0; b < binCount; b++) {
+            if (demands[b] <= maxCapacity) {
+                Route route = new Route();
+                route.add(binNode(b), demands[b]);
+                routeOf[b] = route;
+            }
+        }
+
+        // Join route ending in i with route starting in j while capacity allows
+        for (Saving s : savings) {
+            if (s.value <= EPSILON) break;
+            Route left = routeOf[s.from];
+            Route right = routeOf[s.to];
+            if (left == null || right == null || left == right) continue;
+            if (left.last() != binNode(s.from) || right.first() != binNode(s.to)) continue;
+            if (left.load + right.load > maxCapacity) continue;
+
+            for (int k = 0; k < right.size; k++) {
+                int node = right.stops[k];
+                left.add(node, demands[node - 1]);
+                routeOf[node - 1] = left;
+            }
+        }
+
+        List<Route> result = new ArrayList<>();
+        for (Route route : routeOf) {
+            if (route != null && !route.collected) {
+                route.collected = true;
+                result.add(route);
+            }
+        }
+        return result;
+    }
+
+    private List<Saving> savingsFor(int bin) {
+        int from = binNode(bin);
+        int limit = Math.min(SAVINGS_NEIGHBOURS, binCount - 1);
+
+        // Keep the closest bins in a small array sorted by distance (insertion into a bounded list)
+        int[] nearest = new int[limit];
+        double[] nearestDistance = new double[limit];
+        int found = 0;
+        for (int other = 0; other < binCount; other++) {
+            if (other == bin) continue;
+            double d = matrix.get(from, binNode(other));
+            if (found == limit && d >= nearestDistance[limit - 1]) continue;
+            int k = found < limit ? found++ : limit - 1;
+            while (k > 0 && nearestDistance[k - 1] > d) {
+                nearest[k] = nearest[k - 1];
+                nearestDistance[k] = nearestDistance[k - 1];
+                k--;
+            }
+            nearest[k] = other;
+            nearestDistance[k] = d;
+        }
+
+        List<Saving> result = new ArrayList<>(found);
+        for (int k = 0; k < found; k++) {
+            int to = binNode(nearest[k]);
+            double value = matrix.get(from, 0) + matrix.get(0, to) - nearestDistance[k];
+            result.add(new Saving(bin, nearest[k], value));
+        }
+        return result;
+    }
+
+    // Biggest routes first, each to the closest truck that still has room for it
+    private Route[] assignToTrucks(List<Route> constructed) {
+        Route[] byTruck = new Route[truckCount];
+        for (int r = 0; r < truckCount; r++) {
+            byTruck[r] = new Route();
+        }
+        boolean[] used = new boolean[truckCount];
+
+        constructed.sort(Comparator.comparingDouble((Route route) -> route.load).reversed());
+        for (Route route : constructed) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int r = 0; r < truckCount; r++) {
+                if (used[r] || capacities[r] < route.load) continue;
+                double d = matrix.get(truckNode(r), route.first());
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    best = r;
+                }
+            }
+            if (best >= 0) {
+                byTruck[best] = route;
+                used[best] = true;
+            }
+        }
+        return byTruck;
+    }
+
+    private List<Integer> collectUnassigned(Route[] routes) {
+        boolean[] assigned = new boolean[binCount];
+        for (Route route : routes) {
+            for (int k = 0; k < route.size; k++) {
+                assigned[route.stops[k] - 1] = true;
+            }
+        }
+        List<Integer> unassigned = new ArrayList<>();
+        for (int b = 0; b < binCount; b++) {
+            if (!assigned[b]) unassigned.add(b);
+        }
+        return unassigned;
+    }
+
+    // Cheapest feasible insertion for bins that did not make it into any route
+    private void insertUnassigned(Route[] routes, List<Integer> unassigned) {
+        unassigned.removeIf(bin -> {
+            int node = binNode(bin);
+            int bestTruck = -1;
+            int bestPosition = -1;
+            double bestCost = Double.MAX_VALUE;
+            for (int r = 0; r < truckCount; r++) {
+                Route route = routes[r];
+                if (route.load + demands[bin] > capacities[r]) continue;
+                for (int p = 0; p <= route.size; p++) {
+                    double cost = insertionCost(route, truckNode(r), p, node);
+                    if (cost < bestCost) {
+                        bestCost = cost;
+                        bestTruck = r;
+                        bestPosition = p;
+                    }
+                }
+            }
+            if (bestTruck < 0) return false;
+            routes[bestTruck].insert(bestPosition, node, demands[bin]);
+            return true;
+        });
+    }
+
+    // ---------------------------------------------------------
+    // IMPROVEMENT: inter-route relocate and swap
+    // ---------------------------------------------------------
+    private void improveBetweenRoutes(Route[] routes, long deadline) {
+        int pairCount = truckCount * truckCount;
+        while (System.nanoTime() < deadline) {
+            // Best move for every ordered pair of trucks, evaluated in parallel
+            List<Move> moves = pool.submit(() -> IntStream.range(0, pairCount).parallel()
+                    .mapToObj(pair -> bestMove(routes, pair / truckCount, pair % truckCount))
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparingDouble((Move m) -> m.gain).reversed())
+                    .toList()).join();
+            if (moves.isEmpty()) break;
+
+            // Apply the best moves whose routes have not been touched in this round
+            boolean[] touched = new boolean[truckCount];
+            for (Move move : moves) {
+                if (touched[move.routeA] || touched[move.routeB]) continue;
+                apply(routes, move);
+                touched[move.routeA] = true;
+                touched[move.routeB] = true;
+            }
+        }
+    }
+
+    private Move bestMove(Route[] routes, int a, int b) {
+        if (a == b) return null;
+        Route routeA = routes[a];
+        Route routeB = routes[b];
+        int startA = truckNode(a);
+        int startB = truckNode(b);
+        Move best = null;
+
+        for (int i = 0; i < routeA.size; i++) {
+            int nodeA = routeA.stops[i];
+            double demandA = demands[nodeA - 1];
+            double removalGain = removalGain(routeA, startA, i);
+
+            // Relocate A[i] into B (the reverse direction is covered by the (b, a) pair)
+            if (routeB.load + demandA <= capacities[b]) {
+                for (int p = 0; p <= routeB.size; p++) {
+                    double gain = removalGain - insertionCost(routeB, startB, p, nodeA);
+                    if (gain > EPSILON && (best == null || gain > best.gain)) {
+                        best = new Move(a, b, i, p, gain, false);
+                    }
+                }
+            }
+
+            // Swap A[i] with B[j] (only counted once, for a < b)
+            if (a > b) continue;
+            for (int j = 0; j < routeB.size; j++) {
+                int nodeB = routeB.stops[j];
+                double demandB = demands[nodeB - 1];
+                if (routeA.load - demandA + demandB > capacities[a]) continue;
+                if (routeB.load - demandB + demandA > capacities[b]) continue;
+                double gain = -replacementDelta(routeA, startA, i, nodeB) - replacementDelta(routeB, startB, j, nodeA);
+                if (gain > EPSILON && (best == null || gain > best.gain)) {
+                    best = new Move(a, b, i, j, gain, true);
+                }
+            }
+        }
+        return best;
+    }
+
+    private void apply(Route[] routes, Move move) {
+        Route routeA = routes[move.routeA];
+        Route routeB = routes[move.routeB];
+        int nodeA = routeA.stops[move.positionA];
+        if (move.swap) {
+            int nodeB = routeB.stops[move.positionB];
+            routeA.stops[move.positionA] = nodeB;
+            routeB.stops[move.positionB] = nodeA;
+            routeA.load += demands[nodeB - 1] - demands[nodeA - 1];
+            routeB.load += demands[nodeA - 1] - demands[nodeB - 1];
+        } else {
+            routeA.remove(move.positionA, demands[nodeA - 1]);
+            routeB.insert(move.positionB, nodeA, demands[nodeA - 1]);
+        }
+    }
+
+    // Distance saved by dropping stop i. An emptied route means the truck simply stays put.
+    private double removalGain(Route route, int start, int i) {
+        int node = route.stops[i];
+        if (route.size == 1) {
+            return matrix.get(start, node) + matrix.get(node, 0);
+        }
+        int prev = i == 0 ? start : route.stops[i - 1];
+        int next = i == route.size - 1 ? 0 : route.stops[i + 1];
+        return matrix.get(prev, node) + matrix.get(node, next) - matrix.get(prev, next);
+    }
+
+    // Extra distance for inserting node before position p. An empty route starts from a parked truck.
+    private double insertionCost(Route route, int start, int p, int node) {
+        if (route.size == 0) {
+            return matrix.get(start, node) + matrix.get(node, 0);
+        }
+        int prev = p == 0 ? start : route.stops[p - 1];
+        int next = p == route.size ? 0 : route.stops[p];
+        return matrix.get(prev, node) + matrix.get(node, next) - matrix.get(prev, next);
+    }
+
+    // Change in route length when stop i is replaced by another node
+    private double replacementDelta(Route route, int start, int i, int node) {
+        int prev = i == 0 ? start : route.stops[i - 1];
+        int next = i == route.size - 1 ? 0 : route.stops[i + 1];
+        int old = route.stops[i];
+        return matrix.get(prev, node) + matrix.get(node, next) - matrix.get(prev, old) - matrix.get(old, next);
+    }
+
+    private int binNode(int bin) {
+        return bin + 1;
+    }
+
+    private int truckNode(int truck) {
+        return binCount + 1 + truck;
+    }
+
+    // ---------------------------------------------------------
+    // Internal structures
+    // ---------------------------------------------------------
+    private record Saving(int from, int to, double value) {}
+
+    private record Move(int routeA, int routeB, int positionA, int positionB, double gain, boolean swap) {}
+
+    // Growable list of bin matrix indices with its total load
+    private static class Route {
+        int[] stops = new int[8];
+        int size;
+        double load;
+        boolean collected;
+
+        int first() { return stops[0]; }
+        int last() { return stops[size - 1]; }
+
+        void add(int node, double demand) {
+            insert(size, node, demand);
+        }
+
+        void insert(int position, int node, double demand) {
+            if (size == stops.length) stops = Arrays.copyOf(stops, size * 2);
+            System.arraycopy(stops, position, stops, position + 1, size - position);
+            stops[position] = node;
+            size++;
+            load += demand;
+        }
+
+        void remove(int position, double demand) {
+            System.arraycopy(stops, position + 1, stops, position, size - position - 1);
+            size--;
+            load -= demand;
+        }
+
+        int[] toPath(int start) {
+            int[] path = new int[size + 2];
+            path[0] = start;
+            System.arraycopy(stops, 0, path, 1, size);
+            path[size + 1] = 0;
+            return path;
+        }
+    }
+}
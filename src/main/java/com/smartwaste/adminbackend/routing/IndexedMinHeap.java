@@ -0,0 +1,99 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.util.Arrays;
+
+// Binary min-heap over node indices 0..capacity-1 with O(log n) decrease-key.
+// position[node] tracks where each node sits in the heap (-1 when not queued).
+public class IndexedMinHeap {
+
+    private final int[] heap;
+    private final int[] position;
+    private final double[] keys;
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    public boolean isEmpty() { return size == 0; }
+    public boolean contains(int node) { return position[node] >= 0; }
+    public double key(int node) { return keys[node]; }
+    public int peek() { return heap[0]; }
+
+    // Inserts the node, or lowers its key if it is already queued with a larger one
+    public void insertOrDecrease(int node, double key) {
+        if (position[node] < 0) {
+            heap[size] = node;
+            position[node] = size;
+            keys[node] = key;
+            siftUp(size++);
+        } else if (key < keys[node]) {
+            keys[node] = key;
+            siftUp(position[node]);
+        }
+    }
+
+    // Sets the key of a queued node in either direction (or inserts it)
+    public void update(int node, double key) {
+        if (position[node] < 0) {
+            insertOrDecrease(node, key);
+            return;
+        }
+        keys[node] = key;
+        siftUp(position[node]);
+        siftDown(position[node]);
+    }
+
+    public int poll() {
+        int min = heap[0];
+        position[min] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return min;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int i) {
+        int node = heap[i];
+        double key = keys[node];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (keys[heap[parent]] <= key) break;
+            heap[i] = heap[parent];
+            position[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+
+    private void siftDown(int i) {
+        int node = heap[i];
+        double key = keys[node];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) child = right;
+            if (key <= keys[heap[child]]) break;
+            heap[i] = heap[child];
+            position[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = node;
+        position[node] = i;
+    }
+}
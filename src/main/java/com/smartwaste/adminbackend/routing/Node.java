@@ -2,7 +2,8 @@ package com.smartwaste.adminbackend.routing;
 
 import com.smartwaste.adminbackend.model.Bin;
 import lombok.Data;
-import lombok.EqualsAndHashCode; // ++ Import Exclude ++
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
 
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -10,17 +11,19 @@ import java.util.List;
 import java.util.Map;
 
 @Data // Keep @Data for getters/setters/toString
+@EqualsAndHashCode(onlyExplicitlyIncluded = true) // Identity is the id only; location and distance can change
 public class Node {
 
+    @EqualsAndHashCode.Include
     private String id;
     private Bin.Location location;
 
     // --- Dijkstra Algorithm fields ---
 
-    @EqualsAndHashCode.Exclude // ++ Exclude from equals/hashCode ++
+    @ToString.Exclude // Avoid recursing through neighbours
     private Map<Node, Double> adjacentNodes = new HashMap<>();
 
-    @EqualsAndHashCode.Exclude // ++ Exclude from equals/hashCode ++
+    @ToString.Exclude
     private List<Node> shortestPath = new LinkedList<>();
 
     private Double distance = Double.MAX_VALUE;
@@ -37,13 +40,18 @@ public class Node {
     // Helper function to calculate straight-line distance (Haversine formula in km)
     public static double calculateDistance(Bin.Location loc1, Bin.Location loc2) {
         if (loc1 == null || loc2 == null) return Double.MAX_VALUE; // Safety check
+        return calculateDistance(loc1.getLatitude(), loc1.getLongitude(), loc2.getLatitude(), loc2.getLongitude());
+    }
+
+    // Same Haversine distance on raw coordinates, for callers that keep positions in primitive arrays
+    public static double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
         double R = 6371; // Radius of the Earth in km
 
-        double latDistance = Math.toRadians(loc2.getLatitude() - loc1.getLatitude());
-        double lonDistance = Math.toRadians(loc2.getLongitude() - loc1.getLongitude());
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
 
         double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(loc1.getLatitude())) * Math.cos(Math.toRadians(loc2.getLatitude()))
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
                 * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
 
         double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
@@ -0,0 +1,119 @@
+package com.smartwaste.adminbackend.routing;
+
+import com.smartwaste.adminbackend.model.Bin;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Street graph loaded from a simple CSV edge list. Distances are in km.
+//
+//   # comment
+//   node,<id>,<latitude>,<longitude>
+//   edge,<fromId>,<toId>[,<lengthKm>][,oneway]
+//
+// Edges are two-way unless marked "oneway"; a missing length is filled in with the Haversine
+// distance between the two nodes. Node ids can be any text (e.g. OSM node ids).
+public class RoadNetwork {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final CsrGraph graph;
+
+    public RoadNetwork(double[] latitudes, double[] longitudes, CsrGraph graph) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.graph = graph;
+    }
+
+    public int nodeCount() { return latitudes.length; }
+    public double latitude(int node) { return latitudes[node]; }
+    public double longitude(int node) { return longitudes[node]; }
+    public CsrGraph graph() { return graph; }
+
+    public static RoadNetwork loadEdgeList(Path file) throws IOException {
+        Map<String, Integer> nodeIndex = new HashMap<>();
+        double[] lat = new double[1024];
+        double[] lon = new double[1024];
+        int nodeCount = 0;
+
+        // Edges are buffered until all nodes are known, so nodes may appear anywhere in the file
+        int[] edgeLineNumbers = new int[1024];
+        String[][] pendingEdges = new String[1024][];
+        int edgeLines = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split(",");
+                switch (parts[0].trim()) {
+                    case "node" -> {
+                        if (parts.length < 4) throw new IOException("Invalid node on line " + lineNumber + ": " + line);
+                        if (nodeCount == lat.length) {
+                            lat = Arrays.copyOf(lat, nodeCount * 2);
+                            lon = Arrays.copyOf(lon, nodeCount * 2);
+                        }
+                        nodeIndex.put(parts[1].trim(), nodeCount);
+                        lat[nodeCount] = Double.parseDouble(parts[2].trim());
+                        lon[nodeCount] = Double.parseDouble(parts[3].trim());
+                        nodeCount++;
+                    }
+                    case "edge" -> {
+                        if (parts.length < 3) throw new IOException("Invalid edge on line " + lineNumber + ": " + line);
+                        if (edgeLines == pendingEdges.length) {
+                            pendingEdges = Arrays.copyOf(pendingEdges, edgeLines * 2);
+                            edgeLineNumbers = Arrays.copyOf(edgeLineNumbers, edgeLines * 2);
+                        }
+                        edgeLineNumbers[edgeLines] = lineNumber;
+                        pendingEdges[edgeLines++] = parts;
+                    }
+                    default -> throw new IOException("Unknown record type on line " + lineNumber + ": " + line);
+                }
+            }
+        }
+
+        double[] latitudes = Arrays.copyOf(lat, nodeCount);
+        double[] longitudes = Arrays.copyOf(lon, nodeCount);
+        CsrGraph.Builder builder = new CsrGraph.Builder(nodeCount);
+        for (int i = 0; i < edgeLines; i++) {
+            String[] parts = pendingEdges[i];
+            Integer source = nodeIndex.get(parts[1].trim());
+            Integer target = nodeIndex.get(parts[2].trim());
+            if (source == null || target == null) {
+                throw new IOException("Edge on line " + edgeLineNumbers[i] + " references an unknown node.");
+            }
+            double length = -1;
+            boolean oneWay = false;
+            for (int k = 3; k < parts.length; k++) {
+                String value = parts[k].trim();
+                if (value.equalsIgnoreCase("oneway")) oneWay = true;
+                else if (!value.isEmpty()) length = Double.parseDouble(value);
+            }
+            if (length < 0) {
+                length = haversine(latitudes, longitudes, source, target);
+            }
+            builder.addEdge(source, target, length);
+            if (!oneWay) builder.addEdge(target, source, length);
+        }
+        return new RoadNetwork(latitudes, longitudes, builder.build());
+    }
+
+    private static double haversine(double[] lat, double[] lon, int a, int b) {
+        Bin.Location from = new Bin.Location();
+        from.setLatitude(lat[a]);
+        from.setLongitude(lon[a]);
+        Bin.Location to = new Bin.Location();
+        to.setLatitude(lat[b]);
+        to.setLongitude(lon[b]);
+        return Node.calculateDistance(from, to);
+    }
+}
@@ -0,0 +1,35 @@
+package com.smartwaste.adminbackend.routing;
+
+// Output of a single-source shortest path search over a CsrGraph.
+// distance[v] is +Infinity and predecessor[v] is -1 for nodes that were not reached.
+public class ShortestPathTree {
+
+    private final int source;
+    private final double[] distance;
+    private final int[] predecessor;
+
+    ShortestPathTree(int source, double[] distance, int[] predecessor) {
+        this.source = source;
+        this.distance = distance;
+        this.predecessor = predecessor;
+    }
+
+    public int source() { return source; }
+    public double distance(int node) { return distance[node]; }
+    public int predecessor(int node) { return predecessor[node]; }
+    public boolean isReachable(int node) { return distance[node] != Double.POSITIVE_INFINITY; }
+
+    // Nodes from the source up to and including target, rebuilt by walking predecessors backwards
+    public int[] pathTo(int target) {
+        if (!isReachable(target)) return new int[0];
+        int length = 1;
+        for (int v = target; v != source; v = predecessor[v]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = target, i = length - 1; i >= 0; v = predecessor[v], i--) {
+            path[i] = v;
+        }
+        return path;
+    }
+}
@@ -0,0 +1,230 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Uniform latitude/longitude grid over points identified by id (bins, trucks), so location
+// lookups only look at the few cells around the query instead of every point.
+//
+// Each id has exactly one position; moving a point is just another put. Exact-point lookups
+// touch one to four cells, radius and box queries the cells under the (bounding) box, and
+// k-nearest searches grow ring by ring around the query cell until no closer point can be
+// left outside. When a ring would hold more cells than there are points, the search falls
+// back to a plain scan of all points, which is then the cheaper option.
+//
+// Methods are synchronized: simulation ticks and REST writes update the grid concurrently.
+public class SpatialGrid {
+
+    private static final double KM_PER_DEGREE = 6371 * Math.PI / 180; // Along a meridian, same radius as Node
+
+    private final double cellDegrees;
+    private final Map<String, double[]> positions = new HashMap<>(); // id -> {lat, lon}
+    private final Map<Long, Set<String>> cells = new HashMap<>();
+
+    // Bounds of every cell ever occupied (only grow), so ring searches know when to stop
+    private int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+    private int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+
+    public SpatialGrid(double cellDegrees) {
+        if (cellDegrees <= 0) {
+            throw new IllegalArgumentException("Grid cell size must be positive: " + cellDegrees);
+        }
+        this.cellDegrees = cellDegrees;
+    }
+
+    public synchronized void put(String id, double latitude, double longitude) {
+        int row = row(latitude);
+        int col = col(longitude);
+        double[] position = positions.get(id);
+        if (position != null) {
+            if (row(position[0]) == row && col(position[1]) == col) {
+                position[0] = latitude; // Same cell, just move it
+                position[1] = longitude;
+                return;
+            }
+            removeFromCell(cellKey(row(position[0]), col(position[1])), id);
+        }
+        positions.put(id, new double[]{latitude, longitude});
+        cells.computeIfAbsent(cellKey(row, col), c -> new HashSet<>()).add(id);
+        minRow = Math.min(minRow, row);
+        maxRow = Math.max(maxRow, row);
+        minCol = Math.min(minCol, col);
+        maxCol = Math.max(maxCol, col);
+    }
+
+    public synchronized void remove(String id) {
+        double[] position = positions.remove(id);
+        if (position != null) {
+            removeFromCell(cellKey(row(position[0]), col(position[1])), id);
+        }
+    }
+
+    public synchronized void clear() {
+        positions.clear();
+        cells.clear();
+        minRow = minCol = Integer.MAX_VALUE;
+        maxRow = maxCol = Integer.MIN_VALUE;
+    }
+
+    public synchronized int size() {
+        return positions.size();
+    }
+
+    public synchronized boolean contains(String id) {
+        return positions.containsKey(id);
+    }
+
+    // An id whose position is within toleranceDegrees of the point on both axes
+    public synchronized Optional<String> findAt(double latitude, double longitude, double toleranceDegrees) {
+        for (int row = row(latitude - toleranceDegrees); row <= row(latitude + toleranceDegrees); row++) {
+            for (int col = col(longitude - toleranceDegrees); col <= col(longitude + toleranceDegrees); col++) {
+                Set<String> ids = cells.get(cellKey(row, col));
+                if (ids == null) continue;
+                for (String id : ids) {
+                    double[] p = positions.get(id);
+                    if (Math.abs(p[0] - latitude) < toleranceDegrees && Math.abs(p[1] - longitude) < toleranceDegrees) {
+                        return Optional.of(id);
+                    }
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Ids within radiusKm (Haversine) of the point, closest first
+    public synchronized List<String> withinRadius(double latitude, double longitude, double radiusKm) {
+        double latSpan = radiusKm / KM_PER_DEGREE;
+        double lonSpan = radiusKm / (KM_PER_DEGREE * Math.max(1e-6, Math.cos(Math.toRadians(Math.min(89.0, Math.abs(latitude) + latSpan)))));
+        List<Candidate> found = new ArrayList<>();
+        for (int row = Math.max(minRow, row(latitude - latSpan)); row <= Math.min(maxRow, row(latitude + latSpan)); row++) {
+            for (int col = Math.max(minCol, col(longitude - lonSpan)); col <= Math.min(maxCol, col(longitude + lonSpan)); col++) {
+                Set<String> ids = cells.get(cellKey(row, col));
+                if (ids == null) continue;
+                for (String id : ids) {
+                    double distance = distanceTo(id, latitude, longitude);
+                    if (distance <= radiusKm) found.add(new Candidate(id, distance));
+                }
+            }
+        }
+        found.sort(Comparator.comparingDouble(Candidate::distance));
+        return ids(found);
+    }
+
+    // Ids inside the latitude/longitude box (edges included), in no particular order
+    public synchronized List<String> withinBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        List<String> found = new ArrayList<>();
+        int fromRow = Math.max(minRow, row(minLatitude)), toRow = Math.min(maxRow, row(maxLatitude));
+        int fromCol = Math.max(minCol, col(minLongitude)), toCol = Math.min(maxCol, col(maxLongitude));
+        if (fromRow > toRow || fromCol > toCol) return found;
+        if ((long) (toRow - fromRow + 1) * (toCol - fromCol + 1) > positions.size()) {
+            // Zoomed far out: more cells than points, so check every point instead
+            for (Map.Entry<String, double[]> entry : positions.entrySet()) {
+                if (inBox(entry.getValue(), minLatitude, minLongitude, maxLatitude, maxLongitude)) found.add(entry.getKey());
+            }
+            return found;
+        }
+        for (int row = fromRow; row <= toRow; row++) {
+            for (int col = fromCol; col <= toCol; col++) {
+                Set<String> ids = cells.get(cellKey(row, col));
+                if (ids == null) continue;
+                for (String id : ids) {
+                    if (inBox(positions.get(id), minLatitude, minLongitude, maxLatitude, maxLongitude)) found.add(id);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Up to k ids closest to the point that pass the filter, closest first
+    public synchronized List<String> nearest(double latitude, double longitude, int k, Predicate<String> filter) {
+        if (k <= 0 || positions.isEmpty()) return List.of();
+
+        // Max-heap of the best k so far: the head is the one to drop when a closer point turns up
+        PriorityQueue<Candidate> best = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance).reversed());
+        int centerRow = row(latitude);
+        int centerCol = col(longitude);
+        int lastRing = Math.max(Math.max(centerRow - minRow, maxRow - centerRow), Math.max(centerCol - minCol, maxCol - centerCol));
+
+        for (int ring = 0; ring <= lastRing; ring++) {
+            if (8L * ring > positions.size()) {
+                // Sparse around here: scanning every point is cheaper than visiting empty cells
+                best.clear();
+                for (String id : positions.keySet()) {
+                    offer(best, k, id, latitude, longitude, filter);
+                }
+                break;
+            }
+            for (int row = centerRow - ring; row <= centerRow + ring; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                int step = edgeRow ? 1 : 2 * ring; // Inner rows only have their two end cells on the ring
+                for (int col = centerCol - ring; col <= centerCol + ring; col += Math.max(1, step)) {
+                    Set<String> ids = cells.get(cellKey(row, col));
+                    if (ids == null) continue;
+                    for (String id : ids) {
+                        offer(best, k, id, latitude, longitude, filter);
+                    }
+                }
+            }
+            // Anything not yet seen is at least `ring` whole cells away on some axis
+            if (best.size() == k && best.peek().distance() <= ringLowerBoundKm(latitude, ring)) break;
+        }
+
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        return ids(sorted);
+    }
+
+    // --- Helpers ---
+    private void offer(PriorityQueue<Candidate> best, int k, String id, double latitude, double longitude, Predicate<String> filter) {
+        if (filter != null && !filter.test(id)) return;
+        double distance = distanceTo(id, latitude, longitude);
+        if (best.size() < k) {
+            best.add(new Candidate(id, distance));
+        } else if (distance < best.peek().distance()) {
+            best.poll();
+            best.add(new Candidate(id, distance));
+        }
+    }
+
+    private double ringLowerBoundKm(double latitude, int ring) {
+        double farthestLatitude = Math.min(89.0, Math.abs(latitude) + (ring + 1) * cellDegrees);
+        // Slightly under the along-parallel distance, which a great circle can undercut by a hair
+        return 0.99 * ring * cellDegrees * KM_PER_DEGREE * Math.cos(Math.toRadians(farthestLatitude));
+    }
+
+    private static boolean inBox(double[] p, double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        return p[0] >= minLatitude && p[0] <= maxLatitude && p[1] >= minLongitude && p[1] <= maxLongitude;
+    }
+
+    private double distanceTo(String id, double latitude, double longitude) {
+        double[] p = positions.get(id);
+        return Node.calculateDistance(latitude, longitude, p[0], p[1]);
+    }
+
+    private void removeFromCell(long cell, String id) {
+        Set<String> ids = cells.get(cell);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            cells.remove(cell);
+        }
+    }
+
+    private int row(double latitude) { return (int) Math.floor(latitude / cellDegrees); }
+    private int col(double longitude) { return (int) Math.floor(longitude / cellDegrees); }
+    private static long cellKey(int row, int col) { return ((long) row << 32) | (col & 0xFFFFFFFFL); }
+
+    private static List<String> ids(List<Candidate> candidates) {
+        List<String> ids = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) ids.add(candidate.id());
+        return ids;
+    }
+
+    private record Candidate(String id, double distance) {}
+}
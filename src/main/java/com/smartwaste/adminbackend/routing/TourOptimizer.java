@@ -0,0 +1,156 @@
+package com.smartwaste.adminbackend.routing;
+
+import java.util.Arrays;
+
+// Builds and improves open paths over a DistanceMatrix.
+// A path is an int[] of matrix indices whose first (start) and last (end) entries stay fixed,
+// e.g. truck position -> bins -> depot.
+public class TourOptimizer {
+
+    private static final double EPSILON = 1e-9; // Ignore floating point noise when comparing gains
+    private static final int MAX_OR_OPT_SEGMENT = 3; // Or-opt moves chains of 1..3 stops
+
+    private final DistanceMatrix matrix;
+    private final long timeBudgetNanos;
+
+    public TourOptimizer(DistanceMatrix matrix, long timeBudgetMillis) {
+        this.matrix = matrix;
+        this.timeBudgetNanos = Math.max(0, timeBudgetMillis) * 1_000_000L;
+    }
+
+    // Greedy construction: always drive to the closest stop not yet visited
+    public static int[] nearestNeighbourPath(DistanceMatrix matrix, int start, int[] stops, int end) {
+        int[] path = new int[stops.length + 2];
+        int[] remaining = Arrays.copyOf(stops, stops.length);
+        int remainingCount = remaining.length;
+
+        path[0] = start;
+        int current = start;
+        for (int position = 1; remainingCount > 0; position++) {
+            int bestIndex = 0;
+            double bestDistance = Double.MAX_VALUE;
+            for (int k = 0; k < remainingCount; k++) {
+                double d = matrix.get(current, remaining[k]);
+                if (d < bestDistance) {
+                    bestDistance = d;
+                    bestIndex = k;
+                }
+            }
+            current = remaining[bestIndex];
+            path[position] = current;
+            remaining[bestIndex] = remaining[--remainingCount]; // Swap-remove
+        }
+        path[path.length - 1] = end;
+        return path;
+    }
+
+    public static double pathLength(DistanceMatrix matrix, int[] path) {
+        double total = 0.0;
+        for (int i = 0; i + 1 < path.length; i++) {
+            total += matrix.get(path[i], path[i + 1]);
+        }
+        return total;
+    }
+
+    // Local search: alternates 2-opt and Or-opt passes until neither finds an improving move
+    // or the time budget runs out. Modifies the given path in place and returns it.
+    public int[] improve(int[] path) {
+        if (path.length < 4) return path; // Fewer than two inner stops, nothing to reorder
+        long deadline = System.nanoTime() + timeBudgetNanos;
+
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = twoOptPass(path, deadline);
+            improved |= orOptPass(path, deadline);
+        }
+        return path;
+    }
+
+    // 2-opt: reverse the inner segment path[i..j] when reconnecting its ends shortens the path.
+    // Segment costs are tracked in both directions so asymmetric matrices are handled correctly.
+    private boolean twoOptPass(int[] path, long deadline) {
+        int last = path.length - 1;
+        boolean improved = false;
+
+        for (int i = 1; i < last - 1; i++) {
+            int a = path[i - 1];
+            int b = path[i];
+            double forward = 0.0; // Cost of path[i..j] as currently driven
+            double reverse = 0.0; // Cost of path[j..i] if the segment were reversed
+
+            for (int j = i + 1; j < last; j++) {
+                forward += matrix.get(path[j - 1], path[j]);
+                reverse += matrix.get(path[j], path[j - 1]);
+                int c = path[j];
+                int d = path[j + 1];
+
+                double delta = matrix.get(a, c) + reverse + matrix.get(b, d)
+                        - matrix.get(a, b) - forward - matrix.get(c, d);
+                if (delta < -EPSILON) {
+                    reverse(path, i, j);
+                    improved = true;
+                    break; // Segment costs are stale now, move on to the next i
+                }
+            }
+            if (System.nanoTime() >= deadline) break;
+        }
+        return improved;
+    }
+
+    // Or-opt: move a chain of up to three consecutive stops to a cheaper position in the path
+    private boolean orOptPass(int[] path, long deadline) {
+        int last = path.length - 1;
+        boolean improved = false;
+
+        for (int length = 1; length <= MAX_OR_OPT_SEGMENT; length++) {
+            for (int i = 1; i + length - 1 < last; i++) {
+                int e = i + length - 1;
+                int before = path[i - 1];
+                int after = path[e + 1];
+                double removalGain = matrix.get(before, path[i]) + matrix.get(path[e], after)
+                        - matrix.get(before, after);
+                if (removalGain <= EPSILON) continue;
+
+                int bestK = -1;
+                double bestGain = EPSILON;
+                for (int k = 0; k < last; k++) {
+                    if (k >= i - 1 && k <= e) continue; // Edge touches the segment itself
+                    double insertionCost = matrix.get(path[k], path[i]) + matrix.get(path[e], path[k + 1])
+                            - matrix.get(path[k], path[k + 1]);
+                    double gain = removalGain - insertionCost;
+                    if (gain > bestGain) {
+                        bestGain = gain;
+                        bestK = k;
+                    }
+                }
+                if (bestK >= 0) {
+                    moveSegment(path, i, e, bestK);
+                    improved = true;
+                }
+            }
+            if (System.nanoTime() >= deadline) break;
+        }
+        return improved;
+    }
+
+    // Moves path[i..e] so it sits between the stops currently at k and k + 1
+    private static void moveSegment(int[] path, int i, int e, int k) {
+        int length = e - i + 1;
+        int[] segment = Arrays.copyOfRange(path, i, e + 1);
+        if (k < i) {
+            System.arraycopy(path, k + 1, path, k + 1 + length, i - (k + 1));
+            System.arraycopy(segment, 0, path, k + 1, length);
+        } else {
+            System.arraycopy(path, e + 1, path, i, k - e);
+            System.arraycopy(segment, 0, path, k - length + 1, length);
+        }
+    }
+
+    private static void reverse(int[] path, int from, int to) {
+        while (from < to) {
+            int tmp = path[from];
+            path[from++] = path[to];
+            path[to--] = tmp;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Set;
 
 @Component
 public class JwtRequestFilter extends OncePerRequestFilter {
@@ -23,6 +24,12 @@ public class JwtRequestFilter extends OncePerRequestFilter {
     @Autowired
     private JwtUtil jwtUtil;
 
+    @Autowired
+    private StreamTicketService streamTickets;
+
+    // Live streams (SSE) opened by browsers, which can't send the Authorization header
+    private static final Set<String> EVENT_STREAM_PATHS = Set.of("/api/v1/alerts/stream", "/api/v1/trucks/stream");
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
@@ -34,6 +41,12 @@ public class JwtRequestFilter extends OncePerRequestFilter {
 
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
             jwt = authorizationHeader.substring(7);
+        } else if (isEventStreamRequest(request)) {
+            // A one-time ticket from POST /api/v1/auth/stream-ticket, never the login token itself
+            authenticateStreamTicket(request);
+        }
+
+        if (jwt != null) {
             try {
                 username = jwtUtil.extractUsername(jwt);
             } catch (Exception e) {
@@ -58,4 +71,20 @@ public class JwtRequestFilter extends OncePerRequestFilter {
         }
         chain.doFilter(request, response);
     }
+
+    private void authenticateStreamTicket(HttpServletRequest request) {
+        if (SecurityContextHolder.getContext().getAuthentication() != null) return;
+        streamTickets.redeem(request.getParameter("ticket")).ifPresent(username -> {
+            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
+                    userDetails, null, userDetails.getAuthorities());
+            authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+            SecurityContextHolder.getContext().setAuthentication(authentication);
+        });
+    }
+
+    private boolean isEventStreamRequest(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return "GET".equals(request.getMethod()) && EVENT_STREAM_PATHS.contains(path);
+    }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.smartwaste.adminbackend.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -49,8 +50,12 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 // Configure authorization rules for HTTP requests
                 .authorizeHttpRequests(auth -> auth
+                        // Stream tickets are only issued to logged-in users
+                        .requestMatchers("/api/v1/auth/stream-ticket").authenticated()
                         // Allow unauthenticated access to login and registration endpoints
                         .requestMatchers("/api/v1/auth/**").permitAll()
+                        // Completing a live stream (SSE) is an async re-dispatch of an already authorized request
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
 
                         // ** IMPORTANT **: Since we are using @PreAuthorize on controllers,
                         // we only need a general rule here to require authentication for API endpoints.
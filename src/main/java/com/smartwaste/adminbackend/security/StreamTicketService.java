@@ -0,0 +1,48 @@
+package com.smartwaste.adminbackend.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// One-time tickets for opening a live stream (SSE). Browsers' EventSource can't set an
+// Authorization header, so the credential has to go in the URL, where access logs, proxies and
+// browser history keep it. A ticket is only good for one stream and for ttlSeconds, so unlike
+// the login token it is worthless by the time anyone reads those logs.
+@Component
+public class StreamTicketService {
+
+    @Value("${streams.ticket-ttl-seconds:30}")
+    private long ttlSeconds;
+
+    private record Ticket(String username, long expiresAtMillis) {}
+
+    private final Map<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+
+    public String issue(String username) {
+        long now = System.currentTimeMillis();
+        tickets.values().removeIf(ticket -> ticket.expiresAtMillis() < now); // Never redeemed
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        tickets.put(ticket, new Ticket(username, now + ttlSeconds * 1000));
+        return ticket;
+    }
+
+    // The user the ticket was issued to; the ticket can't be used again
+    public Optional<String> redeem(String ticket) {
+        if (ticket == null) return Optional.empty();
+        Ticket redeemed = tickets.remove(ticket);
+        if (redeemed == null || redeemed.expiresAtMillis() < System.currentTimeMillis()) return Optional.empty();
+        return Optional.of(redeemed.username());
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+}
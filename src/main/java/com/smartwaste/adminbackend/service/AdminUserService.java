@@ -97,9 +97,7 @@ public class AdminUserService {
         // Optional: Add logic to prevent deleting the last SUPER_ADMIN
         Optional<AdminUser> userToDelete = adminUserRepository.findById(id);
         if (userToDelete.isPresent() && AdminUser.ROLE_SUPER_ADMIN.equals(userToDelete.get().getRole())) {
-            long superAdminCount = adminUserRepository.findAll().stream()
-                    .filter(u -> AdminUser.ROLE_SUPER_ADMIN.equals(u.getRole()))
-                    .count();
+            long superAdminCount = adminUserRepository.countByRole(AdminUser.ROLE_SUPER_ADMIN);
             if (superAdminCount <= 1) {
                 System.err.println("Cannot delete the last Super Admin user.");
                 return false; // Prevent deletion
@@ -1,25 +1,171 @@
 package com.smartwaste.adminbackend.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.smartwaste.adminbackend.model.Alert;
 import com.smartwaste.adminbackend.repository.AlertRepository;
+import com.smartwaste.adminbackend.repository.KeysetPager;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-// import java.time.LocalDateTime; // Not needed directly here anymore
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+// Alerts are published as events into a bounded queue and written by one background writer,
+// so the simulation and REST calls never wait on alert persistence. The writer drains up to a
+// batch of events at a time, inserts the new alerts with one insertAll and applies the repeats
+// with one unordered bulk update. When the queue is full, publishers wait briefly
+// (backpressure), then the alert is dropped and counted.
+//
+// Alerts are deduplicated per (type, related entity): while an unresolved alert for the same key
+// was last seen within the dedup window, a repeat only bumps its occurrence count and last-seen
+// time instead of inserting another document. The open alert per key is kept in memory; the
+// writer loads it from Mongo before its first batch (retrying until Mongo answers), so startup
+// never waits on the database.
+//
+// Dashboards subscribe to /api/v1/alerts/stream instead of polling: they get the unresolved
+// alerts once, then every created, repeated and resolved alert as it is written.
 @Service
 public class AlertService {
 
     @Autowired
     private AlertRepository alertRepository;
 
-    // Method to create a new alert (no changes)
-    public Alert createAlert(Alert.AlertType type, String message, String relatedEntityId) {
-        Alert newAlert = new Alert(type, message, relatedEntityId);
-        System.out.println("ALERT CREATED: " + message); // Log alert creation
-        return alertRepository.save(newAlert);
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private KeysetPager pager;
+
+    // Repeats of an unresolved alert within this window are coalesced into it (0 = never coalesce)
+    @Value("${alerts.dedup-window-minutes:30}")
+    private long dedupWindowMinutes;
+
+    // Pipeline: queued events, events written per batch, and how long a publisher waits on a full queue
+    @Value("${alerts.queue-capacity:10000}")
+    private int queueCapacity;
+    @Value("${alerts.batch-size:500}")
+    private int batchSize;
+    @Value("${alerts.publish-timeout-ms:10}")
+    private long publishTimeoutMs;
+
+    // Live streams: events kept for Last-Event-ID resume, and how long one SSE connection stays open
+    @Value("${streams.replay-capacity:1000}")
+    private int replayCapacity;
+    @Value("${streams.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    // Events waiting for one client before it counts as fallen behind and is dropped
+    @Value("${streams.subscriber-queue-capacity:500}")
+    private int subscriberQueueCapacity;
+
+    public record PipelineStats(int queued, int queueCapacity, long published, long dropped, long inserted,
+                                long coalesced, long failed, long batches, double lastBatchMs) {}
+
+    private record AlertKey(Alert.AlertType type, String relatedEntityId) {}
+    private record AlertEvent(Alert.AlertType type, String message, String relatedEntityId, LocalDateTime time) {}
+
+    private final Map<AlertKey, Alert> openAlerts = new ConcurrentHashMap<>();
+
+    private EventBroadcaster alertStream;
+    private BlockingQueue<AlertEvent> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private volatile boolean openAlertsLoaded;
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong inserted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private volatile long lastBatchNanos;
+
+    @PostConstruct
+    private void start() {
+        alertStream = new EventBroadcaster("alerts", objectMapper, replayCapacity, subscriberQueueCapacity, emitterTimeoutMs);
+        queue = new ArrayBlockingQueue<>(queueCapacity); // Alerts raised before the writer runs wait here
+        running = true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startWriter() {
+        writer = new Thread(this::runWriter, "alert-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        // Not interrupted: that would abort a Mongo write in progress and lose its batch. The writer
+        // sees running go false within its poll timeout and writes what is still queued before exiting.
+        running = false;
+        try {
+            if (writer != null && !openAlertsLoaded) {
+                // Still waiting for Mongo: it hasn't written anything and can't now, so don't wait for it
+                if (!queue.isEmpty()) System.err.println("Mongo unavailable at shutdown, " + queue.size() + " alerts unwritten.");
+            } else if (writer != null) {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+                if (writer.isAlive()) {
+                    System.err.println("Alert writer still busy at shutdown, " + queue.size() + " alerts unwritten.");
+                }
+            } else {
+                List<AlertEvent> remaining = new ArrayList<>(); // Writer never started: write them here
+                queue.drainTo(remaining);
+                if (!remaining.isEmpty()) writeBatch(remaining);
+            }
+        } finally {
+            alertStream.shutdown();
+        }
+    }
+
+    // Queues an alert; it is created, or coalesced into the open alert for the same type and entity, by the writer
+    public void createAlert(Alert.AlertType type, String message, String relatedEntityId) {
+        AlertEvent event = new AlertEvent(type, message, relatedEntityId, LocalDateTime.now());
+        try {
+            if (queue.offer(event, publishTimeoutMs, TimeUnit.MILLISECONDS)) {
+                published.incrementAndGet();
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dropped.incrementAndGet();
+        System.err.println("Alert queue full, dropped alert: " + message);
+    }
+
+    // SSE stream: "snapshot" (unresolved alerts) or the events missed since lastEventId, then
+    // "alert-created", "alert-updated" (repeat coalesced) and "alert-resolved" events
+    public SseEmitter subscribe(String lastEventId) {
+        return alertStream.subscribe(lastEventId, this::getUnresolvedAlerts);
+    }
+
+    public PipelineStats getPipelineStats() {
+        return new PipelineStats(queue.size(), queueCapacity, published.get(), dropped.get(), inserted.get(),
+                coalesced.get(), failed.get(), batches.get(), lastBatchNanos / 1e6);
     }
 
     // Method to get all currently active (unresolved) alerts (no changes)
@@ -32,15 +178,140 @@ public class AlertService {
         return alertRepository.findByResolvedTrueOrderByTimestampDesc();
     }
 
+    // One page of resolved alerts, newest first (resolved/timestamp/_id index), optionally with only some fields
+    public KeysetPager.KeysetPage<?> getResolvedAlertsPage(String cursor, Integer limit, String fields) {
+        Set<String> selected = pager.parseFields(Alert.class, fields);
+        return pager.select(pager.newestFirst(Alert.class, Criteria.where("resolved").is(true), "timestamp",
+                cursor, limit, selected), selected);
+    }
+
 
-    // Method to mark an alert as resolved (no changes)
+    // Method to mark an alert as resolved; the next occurrence of its key starts a new alert.
+    // Only the flag is written, so repeats the writer is counting concurrently are not overwritten.
     public Optional<Alert> resolveAlert(String alertId) {
-        Optional<Alert> optionalAlert = alertRepository.findById(alertId);
-        if (optionalAlert.isPresent()) {
-            Alert alert = optionalAlert.get();
-            alert.setResolved(true);
-            return Optional.of(alertRepository.save(alert));
+        Alert alert = mongoTemplate.findAndModify(Query.query(Criteria.where("id").is(alertId)),
+                new Update().set("resolved", true), FindAndModifyOptions.options().returnNew(true), Alert.class);
+        if (alert == null) {
+            return Optional.empty();
+        }
+        openAlerts.computeIfPresent(keyOf(alert), (key, open) -> alertId.equals(open.getId()) ? null : open);
+        alertStream.publish("alert-resolved", alert);
+        return Optional.of(alert);
+    }
+
+    // =====================================================
+    // WRITER
+    // =====================================================
+    private void runWriter() {
+        while (running && !loadOpenAlerts()) {
+            try {
+                TimeUnit.SECONDS.sleep(1);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+        List<AlertEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) { // Nothing queued is lost on a clean shutdown
+            try {
+                AlertEvent first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                writeBatch(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) { // Keep the writer alive
+                System.err.println("Alert batch failed: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Before the first batch, so repeats coalesce into alerts stored by earlier runs
+    private boolean loadOpenAlerts() {
+        try {
+            // Alerts saved before occurrence counting count as one occurrence
+            mongoTemplate.updateMulti(Query.query(Criteria.where("occurrences").exists(false)),
+                    new Update().set("occurrences", 1), Alert.class);
+            // Newest first, so the newest unresolved alert per key wins
+            for (Alert alert : alertRepository.findByResolvedFalseOrderByTimestampDesc()) {
+                openAlerts.putIfAbsent(keyOf(alert), alert);
+            }
+            openAlertsLoaded = true;
+            return true;
+        } catch (RuntimeException e) {
+            System.err.println("Open alerts not loaded, retrying: " + e.getMessage());
+            return false;
         }
-        return Optional.empty();
     }
-}
\ No newline at end of file
+
+    // Runs on the writer thread only (or on shutdown, when the writer never started)
+    private void writeBatch(List<AlertEvent> events) {
+        long start = System.nanoTime();
+        List<Alert> newAlerts = new ArrayList<>();
+        Map<String, Alert> repeated = new HashMap<>(); // Already stored alerts that got repeats, by id
+        Map<String, Integer> repeatCounts = new HashMap<>();
+        for (AlertEvent event : events) {
+            openAlerts.compute(new AlertKey(event.type(), event.relatedEntityId()), (key, open) -> {
+                if (open != null && isWithinDedupWindow(open, event.time())) {
+                    open.setOccurrences(open.getOccurrences() + 1);
+                    open.setLastSeen(event.time());
+                    open.setMessage(event.message()); // Latest reading, e.g. the current fill level
+                    if (open.getId() != null) { // Not inserted yet = part of this batch, written whole below
+                        repeated.put(open.getId(), open);
+                        repeatCounts.merge(open.getId(), 1, Integer::sum);
+                    }
+                    coalesced.incrementAndGet();
+                    return open;
+                }
+                Alert newAlert = new Alert(event.type(), event.message(), event.relatedEntityId());
+                newAlert.setTimestamp(event.time());
+                newAlert.setLastSeen(event.time());
+                newAlerts.add(newAlert);
+                return newAlert;
+            });
+        }
+
+        try {
+            if (!newAlerts.isEmpty()) {
+                mongoTemplate.insertAll(newAlerts); // One round trip; fills in the ids
+                inserted.addAndGet(newAlerts.size());
+            }
+        } catch (RuntimeException e) {
+            // Forget the unsaved alerts so the next occurrence opens them again
+            newAlerts.forEach(alert -> openAlerts.remove(keyOf(alert), alert));
+            failed.addAndGet(newAlerts.size());
+            throw e;
+        }
+        if (!repeated.isEmpty()) {
+            BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Alert.class);
+            repeated.forEach((id, alert) -> bulk.updateOne(Query.query(Criteria.where("id").is(id)),
+                    new Update().inc("occurrences", repeatCounts.get(id)).max("lastSeen", alert.getLastSeen())
+                            .set("message", alert.getMessage())));
+            try {
+                bulk.execute();
+            } catch (RuntimeException e) {
+                failed.addAndGet(repeated.size());
+                throw e;
+            }
+        }
+        newAlerts.forEach(alert -> alertStream.publish("alert-created", alert));
+        repeated.values().forEach(alert -> alertStream.publish("alert-updated", alert));
+        batches.incrementAndGet();
+        lastBatchNanos = System.nanoTime() - start;
+        if (!newAlerts.isEmpty()) {
+            System.out.println("ALERTS CREATED: " + newAlerts.size() + " new, " + repeated.size() + " repeated ("
+                    + events.size() + " events).");
+        }
+    }
+
+    private boolean isWithinDedupWindow(Alert open, LocalDateTime now) {
+        LocalDateTime lastSeen = open.getLastSeen() != null ? open.getLastSeen() : open.getTimestamp();
+        return lastSeen != null && Duration.between(lastSeen, now).toMinutes() < dedupWindowMinutes;
+    }
+
+    private static AlertKey keyOf(Alert alert) {
+        return new AlertKey(alert.getType(), alert.getRelatedEntityId());
+    }
+}
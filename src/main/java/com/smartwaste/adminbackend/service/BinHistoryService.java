@@ -0,0 +1,240 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.BinFillHistory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Fill-level history of every bin, bucketed one document per bin per hour (BinFillHistory).
+//
+// Changes are queued in memory and written in one unordered bulk call per flush: each touched
+// hour gets a single upsert that $pushes the new readings and updates the hour's count/sum/min/max.
+// A batch Mongo never received (unreachable, not connected yet) goes back on the queue for the next
+// flush, up to maxPending readings; one it may have partly applied is dropped, since $push is not
+// idempotent. Drops are counted in getStats.
+// Reads fetch whole hours by the (binId, bucketStart) index; downsampled reads at one hour or
+// coarser use only the stats and leave the reading arrays on the server.
+@Service
+public class BinHistoryService {
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${bin-history.flush-interval-ms:2000}")
+    private long flushIntervalMs;
+    @Value("${bin-history.max-pending:1000000}")
+    private int maxPending;
+
+    public record FillPoint(Instant time, double fillLevel) {}
+    public record FillSummary(Instant start, int count, double min, double max, double average) {}
+    public record HistoryStats(long pending, long written, long requeued, long droppedPartialWrite, long droppedOverflow) {}
+
+    private record Sample(String binId, Instant time, double fillLevel) {}
+    private record BucketKey(String binId, Instant bucketStart) {}
+
+    private final ConcurrentLinkedQueue<Sample> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicLong pendingCount = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong requeued = new AtomicLong();
+    private final AtomicLong droppedPartialWrite = new AtomicLong();
+    private final AtomicLong droppedOverflow = new AtomicLong();
+    private ScheduledExecutorService writer;
+
+    @PostConstruct
+    private void startWriter() {
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bin-history-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    private void stopWriter() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    // =====================================================
+    // WRITES
+    // =====================================================
+    public void record(String binId, double fillLevel, Instant time) {
+        if (binId == null) return;
+        enqueue(new Sample(binId, time != null ? time : Instant.now(), fillLevel));
+    }
+
+    public void record(String binId, double fillLevel) {
+        record(binId, fillLevel, Instant.now());
+    }
+
+    public synchronized void flush() {
+        Map<BucketKey, List<Sample>> buckets = new LinkedHashMap<>();
+        Sample sample;
+        while ((sample = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            buckets.computeIfAbsent(new BucketKey(sample.binId(), hourOf(sample.time())), key -> new ArrayList<>()).add(sample);
+        }
+        if (buckets.isEmpty()) return;
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BinFillHistory.class);
+        int readings = 0;
+        for (Map.Entry<BucketKey, List<Sample>> bucket : buckets.entrySet()) {
+            List<Sample> samples = bucket.getValue();
+            Object[] offsets = new Object[samples.size()];
+            Object[] levels = new Object[samples.size()];
+            double sum = 0, min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int i = 0; i < samples.size(); i++) {
+                Sample s = samples.get(i);
+                offsets[i] = (int) Duration.between(bucket.getKey().bucketStart(), s.time()).getSeconds();
+                levels[i] = s.fillLevel();
+                sum += s.fillLevel();
+                min = Math.min(min, s.fillLevel());
+                max = Math.max(max, s.fillLevel());
+            }
+            Update update = new Update()
+                    .inc("count", samples.size())
+                    .inc("sum", sum)
+                    .min("min", min)
+                    .max("max", max);
+            update.push("offsetSeconds").each(offsets);
+            update.push("fillLevels").each(levels);
+            bulk.upsert(bucketQuery(bucket.getKey().binId(), bucket.getKey().bucketStart()), update);
+            readings += samples.size();
+        }
+        try {
+            bulk.execute();
+            written.addAndGet(readings);
+        } catch (BulkOperationException e) {
+            // Mongo ran the batch and some upserts failed: retrying would $push the applied ones twice
+            droppedPartialWrite.addAndGet(readings);
+            System.err.println("Bin history write partly failed, " + readings + " readings dropped: " + e.getMessage());
+            throw e;
+        } catch (RuntimeException e) { // Nothing written: keep the readings for the next flush
+            buckets.values().forEach(samples -> samples.forEach(this::enqueue));
+            requeued.addAndGet(readings);
+            System.err.println("Bin history write failed, " + readings + " readings kept for retry: " + e.getMessage());
+            throw e;
+        }
+    }
+
+    public HistoryStats getStats() {
+        return new HistoryStats(pendingCount.get(), written.get(), requeued.get(), droppedPartialWrite.get(),
+                droppedOverflow.get());
+    }
+
+    // Past maxPending (a long outage) the oldest readings give way
+    private void enqueue(Sample sample) {
+        pending.add(sample);
+        if (pendingCount.incrementAndGet() > maxPending && pending.poll() != null) {
+            pendingCount.decrementAndGet();
+            droppedOverflow.incrementAndGet();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) { // Already logged by flush; keep the writer alive
+        }
+    }
+
+    // =====================================================
+    // READS
+    // =====================================================
+
+    // Every reading of the bin in [from, to), oldest first
+    public List<FillPoint> getHistory(String binId, Instant from, Instant to) {
+        List<FillPoint> points = new ArrayList<>();
+        for (BinFillHistory bucket : findBuckets(binId, from, to, true)) {
+            int[] offsets = bucket.getOffsetSeconds();
+            double[] levels = bucket.getFillLevels();
+            if (offsets == null || levels == null) continue;
+            for (int i = 0; i < Math.min(offsets.length, levels.length); i++) {
+                Instant time = bucket.getBucketStart().plusSeconds(offsets[i]);
+                if (!time.isBefore(from) && time.isBefore(to)) {
+                    points.add(new FillPoint(time, levels[i]));
+                }
+            }
+        }
+        points.sort(Comparator.comparing(FillPoint::time)); // Readings can arrive out of order within an hour
+        return points;
+    }
+
+    // Min / max / average per step. Steps of whole hours are built from the hourly stats alone
+    // (so the window is widened to whole hours); shorter steps aggregate the readings.
+    public List<FillSummary> getDownsampled(String binId, Instant from, Instant to, Duration step) {
+        Map<Instant, double[]> steps = new TreeMap<>(); // step start -> {count, sum, min, max}
+        if (step.toSeconds() % 3600 == 0) {
+            Instant alignedFrom = hourOf(from);
+            for (BinFillHistory bucket : findBuckets(binId, alignedFrom, to, false)) {
+                Instant stepStart = stepStart(alignedFrom, bucket.getBucketStart(), step);
+                accumulate(steps, stepStart, bucket.getCount(), bucket.getSum(), bucket.getMin(), bucket.getMax());
+            }
+        } else {
+            for (FillPoint point : getHistory(binId, from, to)) {
+                accumulate(steps, stepStart(from, point.time(), step), 1, point.fillLevel(), point.fillLevel(), point.fillLevel());
+            }
+        }
+        List<FillSummary> summaries = new ArrayList<>(steps.size());
+        steps.forEach((start, s) -> summaries.add(new FillSummary(start, (int) s[0], s[2], s[3], s[1] / s[0])));
+        return summaries;
+    }
+
+    private List<BinFillHistory> findBuckets(String binId, Instant from, Instant to, boolean withReadings) {
+        Query query = Query.query(Criteria.where("binId").is(binId).and("bucketStart").gte(hourOf(from)).lt(to))
+                .with(Sort.by("bucketStart"));
+        if (!withReadings) {
+            query.fields().exclude("offsetSeconds", "fillLevels");
+        }
+        return mongoTemplate.find(query, BinFillHistory.class);
+    }
+
+    private static void accumulate(Map<Instant, double[]> steps, Instant stepStart, int count, double sum, double min, double max) {
+        if (count <= 0) return;
+        double[] s = steps.computeIfAbsent(stepStart, key -> new double[] {0, 0, Double.MAX_VALUE, -Double.MAX_VALUE});
+        s[0] += count;
+        s[1] += sum;
+        s[2] = Math.min(s[2], min);
+        s[3] = Math.max(s[3], max);
+    }
+
+    private static Instant stepStart(Instant origin, Instant time, Duration step) {
+        long stepSeconds = step.toSeconds();
+        long index = Math.floorDiv(Duration.between(origin, time).getSeconds(), stepSeconds);
+        return origin.plusSeconds(index * stepSeconds);
+    }
+
+    private static Query bucketQuery(String binId, Instant bucketStart) {
+        return Query.query(Criteria.where("binId").is(binId).and("bucketStart").is(bucketStart));
+    }
+
+    private static Instant hourOf(Instant time) {
+        return time.truncatedTo(ChronoUnit.HOURS);
+    }
+}
@@ -3,12 +3,27 @@ package com.smartwaste.adminbackend.service;
 import com.smartwaste.adminbackend.model.Alert;
 import com.smartwaste.adminbackend.model.Bin;
 import com.smartwaste.adminbackend.repository.BinRepository;
+import com.smartwaste.adminbackend.repository.GeoPositionListener;
+import com.smartwaste.adminbackend.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
 import org.springframework.stereotype.Service;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Random; // Make sure this import exists
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class BinService {
@@ -17,16 +32,51 @@ public class BinService {
     private BinRepository binRepository;
     @Autowired
     private AlertService alertService;
+    @Autowired
+    private LocationIndexService locationIndex;
+    @Autowired
+    private FleetStateService fleetState; // Simulation's resident copy of every bin
+    @Autowired
+    private BinHistoryService binHistory;
+    @Autowired
+    private KeysetPager pager;
+    @Autowired
+    private ModelRegistry modelRegistry;
+    @Autowired
+    private OnlineFillModelService onlineModels;
 
     // Threshold for bin alerts
     private static final double BIN_ALERT_THRESHOLD = 85.0;
 
-    // --- getAllBins, getBinById, deleteBin remain the same ---
-    public List<Bin> getAllBins() { return binRepository.findAll(); }
-    public Optional<Bin> getBinById(String id) { return binRepository.findById(id); }
+    // One sensor report; timestamp is when it was measured (optional, taken as the time of ingestion)
+    public record BinReading(String binId, Double fillLevel, Instant timestamp) {}
+    public record IngestResult(int received, int applied, int coalesced, int stale, int unknownBins, int rejected, int alerts) {}
+
+    // Time of the reading each bin's resident fill level comes from, so a delayed batch can't roll it back
+    private final Map<String, Instant> lastAppliedReading = new ConcurrentHashMap<>();
+
+    // Reads come from the resident bins: Mongo lags them by up to a flush interval
+    public List<Bin> getAllBins() { return fleetState.getBins(); }
+
+    // One page in id order: ids come from Mongo (_id index only), the bins from resident state so fill levels are current
+    public KeysetPager.KeysetPage<?> getBinsPage(String cursor, Integer limit, String fields) {
+        Set<String> selected = pager.parseFields(Bin.class, fields);
+        KeysetPager.KeysetPage<Bin> ids = pager.byId(Bin.class, null, cursor, limit, Set.of("id"));
+        List<Bin> bins = ids.items().stream()
+                .map(bin -> fleetState.getBin(bin.getId()).orElse(null))
+                .filter(Objects::nonNull)
+                .toList();
+        return pager.select(new KeysetPager.KeysetPage<>(bins, ids.nextCursor()), selected);
+    }
+    public Optional<Bin> getBinById(String id) { return fleetState.getBin(id); }
     public boolean deleteBin(String id) {
         if (binRepository.existsById(id)) {
             binRepository.deleteById(id);
+            fleetState.removeBin(id);
+            lastAppliedReading.remove(id);
+            locationIndex.removeBin(id);
+            modelRegistry.remove(id); // Its fill models are no use any more
+            onlineModels.remove(id);
             return true;
         } return false;
     }
@@ -38,32 +88,37 @@ public class BinService {
             bin.setFillLevel(Math.random() * 100);
         }
         Bin savedBin = binRepository.save(bin);
+        fleetState.putBin(savedBin);
+        locationIndex.indexBin(savedBin);
+        binHistory.record(savedBin.getId(), savedBin.getFillLevel());
         System.out.println("Checking alert for newly created bin: " + savedBin.getId() + " with fill level: " + savedBin.getFillLevel());
         checkAndCreateBinAlert(savedBin);
         return savedBin;
     }
 
-    // PUT (Update) an existing bin
+    // PUT (Update) an existing bin: the resident bin, in place and under its lock (see FleetStateService.updateBin)
     public Optional<Bin> updateBin(String id, Bin binDetails) {
-        Optional<Bin> optionalBin = binRepository.findById(id);
+        Optional<Bin> optionalBin = fleetState.getBin(id);
         if (optionalBin.isPresent()) {
-            Bin existingBin = optionalBin.get();
-            Double oldFillLevel = existingBin.getFillLevel();
-
-            existingBin.setName(binDetails.getName());
-            existingBin.setLocation(binDetails.getLocation());
-            existingBin.setCapacity(binDetails.getCapacity());
-            existingBin.setFillLevel(binDetails.getFillLevel());
-            existingBin.setStatus(binDetails.getStatus());
-            existingBin.setWasteType(binDetails.getWasteType());
-
-            if (existingBin.getFillLevel() == null &&
-                    (existingBin.getStatus() == Bin.BinStatus.FULL || existingBin.getStatus() == Bin.BinStatus.OVERFLOWING)) {
-                existingBin.setFillLevel(90.0);
-            }
+            Bin updatedBin = optionalBin.get();
+            Double oldFillLevel = fleetState.updateBin(updatedBin, existingBin -> {
+                existingBin.setName(binDetails.getName());
+                existingBin.setLocation(binDetails.getLocation());
+                existingBin.setCapacity(binDetails.getCapacity());
+                existingBin.setFillLevel(binDetails.getFillLevel());
+                existingBin.setStatus(binDetails.getStatus());
+                existingBin.setWasteType(binDetails.getWasteType());
 
-            Bin updatedBin = binRepository.save(existingBin);
+                if (existingBin.getFillLevel() == null &&
+                        (existingBin.getStatus() == Bin.BinStatus.FULL || existingBin.getStatus() == Bin.BinStatus.OVERFLOWING)) {
+                    existingBin.setFillLevel(90.0);
+                }
+            });
+            locationIndex.indexBin(updatedBin);
             Double newFillLevel = updatedBin.getFillLevel();
+            if (newFillLevel != null && !newFillLevel.equals(oldFillLevel)) {
+                binHistory.record(updatedBin.getId(), newFillLevel);
+            }
 
             System.out.println("Checking alert for updated bin: " + updatedBin.getId() +
                     ". Old Level: " + oldFillLevel + ", New Level: " + newFillLevel);
@@ -83,6 +138,134 @@ public class BinService {
     }
 
 
+    // =====================================================
+    // SENSOR INGESTION (batches of fill-level readings)
+    // =====================================================
+    // Readings go to the resident bins and are saved by the write-behind flusher as $set fillLevel /
+    // status deltas in one bulk call, instead of a findById + full save (+ alert) per reading.
+    // Every reading goes to the fill history with its own timestamp; for the resident state several
+    // readings for one bin are coalesced to the latest. The alert check compares the old and new
+    // fill level swapped under the bin's lock, so each crossing alerts exactly once. A reading older
+    // than the one the bin's state already comes from (a delayed batch) only goes to the history.
+    public IngestResult ingestReadings(List<BinReading> readings) {
+        Instant received = Instant.now();
+        Map<String, BinReading> latest = new HashMap<>();
+        Map<String, Bin> bins = new HashMap<>();
+        List<BinReading> accepted = new ArrayList<>();
+        int rejected = 0, unknownBins = 0;
+        for (BinReading reading : readings) {
+            if (reading == null || reading.binId() == null || reading.fillLevel() == null
+                    || !Double.isFinite(reading.fillLevel()) // JSON "NaN" / "Infinity" pass the range check
+                    || reading.fillLevel() < 0 || reading.fillLevel() > 100) {
+                rejected++;
+                continue;
+            }
+            Optional<Bin> residentBin = fleetState.getBin(reading.binId());
+            if (residentBin.isEmpty()) {
+                unknownBins++;
+                continue;
+            }
+            bins.put(reading.binId(), residentBin.get());
+            binHistory.record(reading.binId(), reading.fillLevel(), reading.timestamp());
+            accepted.add(reading);
+            latest.merge(reading.binId(), reading, BinService::laterReading);
+        }
+
+        int applied = 0, stale = 0, alerts = 0;
+        for (BinReading reading : latest.values()) {
+            Bin bin = bins.get(reading.binId());
+            Instant readAt = reading.timestamp() != null ? reading.timestamp() : received;
+            Double oldFillLevel;
+            synchronized (bin) { // The simulation empties bins from its own threads
+                Instant lastApplied = lastAppliedReading.get(bin.getId());
+                if (lastApplied != null && readAt.isBefore(lastApplied)) {
+                    stale++;
+                    continue;
+                }
+                lastAppliedReading.put(bin.getId(), readAt);
+                oldFillLevel = bin.getFillLevel();
+                bin.setFillLevel(reading.fillLevel());
+                if (bin.getStatus() != Bin.BinStatus.MAINTENANCE) {
+                    bin.setStatus(statusForFillLevel(reading.fillLevel()));
+                }
+            }
+            fleetState.markBinDirty(bin);
+            applied++;
+            if (reading.fillLevel() >= BIN_ALERT_THRESHOLD && (oldFillLevel == null || oldFillLevel < BIN_ALERT_THRESHOLD)) {
+                checkAndCreateBinAlert(bin);
+                alerts++;
+            }
+        }
+        // The online models learn from every reading, oldest first (stable: untimed ones keep batch order)
+        accepted.sort(Comparator.comparing(reading -> reading.timestamp() != null ? reading.timestamp() : received));
+        for (BinReading reading : accepted) {
+            onlineModels.observe(reading.binId(), reading.fillLevel(),
+                    reading.timestamp() != null ? reading.timestamp() : received);
+        }
+        int coalesced = readings.size() - rejected - unknownBins - latest.size();
+        System.out.println("Ingested " + readings.size() + " bin readings: " + applied + " applied, " + coalesced
+                + " coalesced, " + stale + " stale, " + unknownBins + " unknown bins, " + rejected + " rejected, "
+                + alerts + " alerts.");
+        return new IngestResult(readings.size(), applied, coalesced, stale, unknownBins, rejected, alerts);
+    }
+
+    // Latest timestamp wins; without timestamps the later reading in the batch wins
+    private static BinReading laterReading(BinReading current, BinReading candidate) {
+        if (current.timestamp() != null && candidate.timestamp() != null && candidate.timestamp().isBefore(current.timestamp())) {
+            return current;
+        }
+        return candidate;
+    }
+
+    private static Bin.BinStatus statusForFillLevel(double fillLevel) {
+        if (fillLevel >= 100.0) return Bin.BinStatus.OVERFLOWING;
+        if (fillLevel >= BIN_ALERT_THRESHOLD) return Bin.BinStatus.FULL;
+        if (fillLevel > 0.0) return Bin.BinStatus.FILLING;
+        return Bin.BinStatus.EMPTY;
+    }
+
+    // =====================================================
+    // GEOSPATIAL QUERIES (2dsphere index on Bin.position)
+    // =====================================================
+    // Mongo prunes by position only; fill levels are checked on the resident copies, which are
+    // ahead of Mongo for bins emptied or filled since the last flush.
+
+    // Bins within radiusKm of the center with at least minFillLevel %, closest first
+    public List<Bin> findBinsNear(Bin.Location center, double radiusKm, double minFillLevel) {
+        return residentCopies(binRepository.findByPositionNear(
+                GeoPositionListener.toPoint(center), new Distance(radiusKm, Metrics.KILOMETERS))).stream()
+                .filter(bin -> bin.getFillLevel() != null && bin.getFillLevel() >= minFillLevel)
+                .toList();
+    }
+
+    public List<Bin> findNearestBins(Bin.Location center, int count) {
+        return residentCopies(binRepository.findByPositionNear(GeoPositionListener.toPoint(center), PageRequest.of(0, count)));
+    }
+
+    // Polygon as [lat, lon] corners; closed automatically if the last corner isn't the first
+    public List<Bin> findBinsInPolygon(List<List<Double>> corners) {
+        List<Point> ring = new ArrayList<>();
+        for (List<Double> corner : corners) {
+            if (corner == null || corner.size() < 2 || corner.get(0) == null || corner.get(1) == null) {
+                throw new RuntimeException("Each polygon corner must be a [latitude, longitude] pair.");
+            }
+            ring.add(new Point(corner.get(1), corner.get(0)));
+        }
+        if (!ring.isEmpty() && !ring.get(0).equals(ring.get(ring.size() - 1))) {
+            ring.add(ring.get(0));
+        }
+        if (ring.size() < 4) {
+            throw new RuntimeException("A polygon needs at least 3 corners.");
+        }
+        return residentCopies(binRepository.findByPositionWithin(new GeoJsonPolygon(ring)));
+    }
+
+    private List<Bin> residentCopies(List<Bin> bins) {
+        return bins.stream()
+                .map(bin -> fleetState.getBin(bin.getId()).orElse(bin))
+                .toList();
+    }
+
     // Helper method to create bin alert
     private void checkAndCreateBinAlert(Bin bin) {
         if (bin.getFillLevel() != null && bin.getFillLevel() >= BIN_ALERT_THRESHOLD) {
@@ -97,7 +280,7 @@ public class BinService {
 
     // ++ NEW METHOD: Simulate Fill Level Prediction ++
     public Optional<Double> predictFillLevel(String binId, int hoursAhead) {
-        Optional<Bin> optionalBin = binRepository.findById(binId);
+        Optional<Bin> optionalBin = fleetState.getBin(binId); // Resident copy: current fill level
         if (optionalBin.isPresent()) {
             Bin bin = optionalBin.get();
             Double currentLevel = bin.getFillLevel();
@@ -2,11 +2,13 @@ package com.smartwaste.adminbackend.service;
 
 import com.smartwaste.adminbackend.model.Driver;
 import com.smartwaste.adminbackend.repository.DriverRepository;
+import com.smartwaste.adminbackend.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class DriverService {
@@ -14,10 +16,19 @@ public class DriverService {
     @Autowired
     private DriverRepository driverRepository;
 
+    @Autowired
+    private KeysetPager pager;
+
     public List<Driver> getAllDrivers() {
         return driverRepository.findAll();
     }
 
+    // One page in id order, optionally with only some fields
+    public KeysetPager.KeysetPage<?> getDriversPage(String cursor, Integer limit, String fields) {
+        Set<String> selected = pager.parseFields(Driver.class, fields);
+        return pager.select(pager.byId(Driver.class, null, cursor, limit, selected), selected);
+    }
+
     public Optional<Driver> getDriverById(String id) {
         return driverRepository.findById(id);
     }
@@ -0,0 +1,210 @@
+package com.smartwaste.adminbackend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+// Fans server-sent events out to every subscriber of one stream (alerts, fleet positions).
+//
+// Each event is serialized once and gets the next sequence number as its SSE id. The last
+// replayCapacity events are kept, so a client reconnecting with Last-Event-ID gets exactly the
+// events it missed; a client that is new, or too far behind, gets a snapshot instead.
+//
+// Every subscriber has its own queue, worked off in sequence order by a sender thread of its own
+// while it has anything queued, so a slow client never holds up publishers, other subscribers or
+// their heartbeats. A subscriber with more than queueCapacity events waiting has fallen behind
+// and is dropped; its client reconnects with Last-Event-ID and catches up from the replay buffer
+// or a snapshot.
+public class EventBroadcaster {
+
+    private static final long HEARTBEAT_SECONDS = 15; // Keeps proxies from closing idle streams, finds dead clients
+
+    private record Event(long id, String name, String json) {}
+
+    private static final Event HEARTBEAT = new Event(0, null, null);
+
+    private final String name;
+    private final ObjectMapper mapper;
+    private final int replayCapacity;
+    private final int queueCapacity;
+    private final long emitterTimeoutMs;
+    private final ScheduledExecutorService heartbeat;
+    private final ExecutorService senders;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Guarded by this. Ids start from the clock so ids from before a restart are never mistaken for new ones.
+    private final ArrayDeque<Event> replay = new ArrayDeque<>();
+    private long sequence = System.currentTimeMillis() * 1000;
+
+    public EventBroadcaster(String name, ObjectMapper mapper, int replayCapacity, int queueCapacity, long emitterTimeoutMs) {
+        this.name = name;
+        this.mapper = mapper.copy().disable(SerializationFeature.INDENT_OUTPUT); // SSE data must be one line
+        this.replayCapacity = replayCapacity;
+        this.queueCapacity = queueCapacity;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name + "-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger threadCount = new AtomicInteger();
+        this.senders = Executors.newCachedThreadPool(runnable -> { // Threads only while subscribers have events queued
+            Thread thread = new Thread(runnable, name + "-sender-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(() -> subscribers.forEach(subscriber -> subscriber.enqueue(HEARTBEAT)),
+                HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Sends the payload to every subscriber; returns its sequence number
+    public long publish(String eventName, Object payload) {
+        String json = toJson(payload);
+        synchronized (this) {
+            Event event = new Event(++sequence, eventName, json);
+            replay.addLast(event);
+            if (replay.size() > replayCapacity) replay.removeFirst();
+            subscribers.forEach(subscriber -> subscriber.enqueue(event)); // Under the lock: queued in sequence order
+            return event.id();
+        }
+    }
+
+    // New stream: the events after lastEventId when they are still buffered, otherwise a
+    // "snapshot" event (taken consistently with the sequence), then every later event
+    public SseEmitter subscribe(String lastEventId, Supplier<Object> snapshot) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+
+        synchronized (this) {
+            List<Event> initial = eventsAfter(parseId(lastEventId));
+            if (initial == null) {
+                initial = List.of(new Event(sequence, "snapshot", toJson(snapshot.get())));
+            }
+            initial.forEach(subscriber::enqueue); // Ahead of anything published after this point
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public synchronized long currentSequence() {
+        return sequence;
+    }
+
+    public void shutdown() {
+        heartbeat.shutdown();
+        subscribers.forEach(subscriber -> subscriber.close(null));
+        senders.shutdown();
+    }
+
+    // Buffered events after lastId, or null when the client must start from a snapshot
+    private List<Event> eventsAfter(Long lastId) {
+        if (lastId == null || lastId > sequence) return null; // New client, or an id from another server run
+        if (lastId < sequence && (replay.isEmpty() || replay.peekFirst().id() > lastId + 1)) return null; // Too far behind
+        List<Event> missed = new ArrayList<>();
+        for (Event event : replay) {
+            if (event.id() > lastId) missed.add(event);
+        }
+        return missed;
+    }
+
+    // One client's outgoing events. At most one sender thread drains it at a time, so its events go out in order.
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Event event) {
+            if (closed) return;
+            if (queued.incrementAndGet() > queueCapacity) {
+                close(null); // Fallen behind: it resumes from Last-Event-ID when it reconnects
+                return;
+            }
+            queue.add(event);
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) { // Shutting down
+                    sending.set(false);
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                Event event;
+                while (!closed && (event = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    try {
+                        emitter.send(event == HEARTBEAT
+                                ? SseEmitter.event().comment("heartbeat")
+                                : SseEmitter.event().id(Long.toString(event.id())).name(event.name()).data(event.json()));
+                    } catch (IOException | IllegalStateException e) { // Client went away
+                        close(e);
+                    }
+                }
+                sending.set(false);
+                // An event queued after the last poll but before the flag was cleared is sent by this thread
+            } while (!closed && !queue.isEmpty() && sending.compareAndSet(false, true));
+        }
+
+        private void close(Exception error) {
+            if (closed) return;
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+            // On a sender thread: completing waits for a send in progress, which may be the stalled one
+            Runnable complete = error != null ? () -> emitter.completeWithError(error) : emitter::complete;
+            try {
+                senders.execute(complete);
+            } catch (RejectedExecutionException e) {
+                complete.run();
+            }
+        }
+    }
+
+    private String toJson(Object payload) {
+        try {
+            return mapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize " + name + " event", e);
+        }
+    }
+
+    private static Long parseId(String id) {
+        if (id == null || id.isBlank()) return null;
+        try {
+            return Long.parseLong(id.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
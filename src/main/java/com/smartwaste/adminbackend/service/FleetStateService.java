@@ -0,0 +1,425 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.model.Truck;
+import com.smartwaste.adminbackend.model.WaypointRoute;
+import com.smartwaste.adminbackend.repository.BinRepository;
+import com.smartwaste.adminbackend.repository.GeoPositionListener;
+import com.smartwaste.adminbackend.repository.TruckRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.TypeInformation;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+// Fleet state for the simulation, resident in memory so a tick never waits on Mongo.
+//
+// Trucks and bins are loaded once the application is up, in the background and retried until
+// Mongo answers, so startup never waits on (or fails without) the database. Until then the
+// resident state is empty; StateLoaded is published when it is filled. Ticks change the
+// resident objects and mark them dirty; a background writer saves dirty documents every flush
+// interval, as soon as the dirty count reaches the threshold, and once more on shutdown.
+//
+// Marking a document dirty copies the fields a tick can change, while the caller still holds
+// the lock its writers share (TruckService.simulationLock for trucks, the bin itself for bins).
+// The flusher only ever reads those copies, never the live objects, so it can't save a
+// half-moved position or a status and route from different ticks. REST writes still save straight to
+// Mongo and then replace the resident copy, so the two stay in step.
+//
+// A flush writes deltas, not documents: for each dirty truck or bin it compares the resident
+// object with what Mongo last saw and $sets only the fields that differ (a reached waypoint is
+// just route.next), all in one unordered bulk call per collection.
+@Service
+public class FleetStateService {
+
+    @Autowired
+    private TruckRepository truckRepository;
+
+    @Autowired
+    private BinRepository binRepository;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    // Write-behind: how often dirty trucks/bins are saved, and how many may pile up before an early flush
+    @Value("${simulation.persistence.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+    @Value("${simulation.persistence.dirty-threshold:500}")
+    private int dirtyThreshold;
+
+    private static final long LOAD_RETRY_SECONDS = 5;
+
+    // Published once the trucks and bins have been loaded from Mongo
+    public record StateLoaded(int trucks, int bins) {}
+
+    private final Map<String, Truck> trucks = new ConcurrentHashMap<>();
+    private final Map<String, Bin> bins = new ConcurrentHashMap<>();
+    // Latest copy of each dirty document, waiting for the next flush
+    private final Map<String, PersistedTruck> dirtyTrucks = new ConcurrentHashMap<>();
+    private final Map<String, PersistedBin> dirtyBins = new ConcurrentHashMap<>();
+
+    // What Mongo last saw for each document; only touched under flushLock. No entry = write the whole document.
+    private final Map<String, PersistedTruck> persistedTrucks = new HashMap<>();
+    private final Map<String, PersistedBin> persistedBins = new HashMap<>();
+
+    // The fields a tick can change, copied. Locations are copied because trucks move theirs in
+    // place; routes are compared by reference since a WaypointRoute only ever moves its cursor.
+    private record PersistedTruck(Bin.Location location, Double fillLevel, Truck.TruckStatus status, WaypointRoute route, int routeNext) {}
+    private record PersistedBin(Double fillLevel, Bin.BinStatus status) {}
+
+    private final Object flushLock = new Object(); // One flush at a time; deletes wait so a flush can't resurrect them
+    private final AtomicBoolean earlyFlushQueued = new AtomicBoolean();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    private void startFlusher() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fleet-state-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    // On the flusher thread, so loading and flushing never overlap
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInBackground() {
+        flusher.execute(this::loadStateOrRetry);
+    }
+
+    private void loadStateOrRetry() {
+        try {
+            loadState();
+        } catch (RuntimeException e) {
+            System.err.println("Fleet state not loaded, retrying in " + LOAD_RETRY_SECONDS + " s: " + e.getMessage());
+            if (!flusher.isShutdown()) flusher.schedule(this::loadStateOrRetry, LOAD_RETRY_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    private void loadState() {
+        long start = System.currentTimeMillis();
+        backfillPositions("bins", "location");
+        backfillPositions("trucks", "currentLocation");
+        List<Truck> storedTrucks = truckRepository.findAll();
+        for (Truck truck : storedTrucks) {
+            if (truck.getLegacyRoute() != null) convertLegacyRoute(truck);
+        }
+        List<Bin> storedBins = binRepository.findAll();
+        synchronized (flushLock) {
+            // A REST write that landed before the load already put the newer copy
+            storedTrucks.forEach(truck -> {
+                if (trucks.containsKey(truck.getId())) return;
+                persistedTrucks.put(truck.getId(), snapshot(truck));
+                trucks.put(truck.getId(), truck);
+            });
+            storedBins.forEach(bin -> {
+                if (bins.containsKey(bin.getId())) return;
+                bins.put(bin.getId(), bin);
+                persistedBins.put(bin.getId(), snapshot(bin));
+            });
+        }
+        System.out.println("Fleet state loaded with " + trucks.size() + " trucks and " + bins.size() + " bins in "
+                + (System.currentTimeMillis() - start) + " ms.");
+        events.publishEvent(new StateLoaded(trucks.size(), bins.size()));
+    }
+
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(10, TimeUnit.SECONDS);
+        flush(); // Nothing dirty may be lost on a clean shutdown
+    }
+
+    // =====================================================
+    // RESIDENT STATE (live objects: mutate, then mark dirty)
+    // =====================================================
+    public List<Truck> getTrucks() { return new ArrayList<>(trucks.values()); }
+    public Optional<Truck> getTruck(String id) { return Optional.ofNullable(trucks.get(id)); }
+    public List<Bin> getBins() { return new ArrayList<>(bins.values()); }
+    public Optional<Bin> getBin(String id) { return Optional.ofNullable(bins.get(id)); }
+
+    // A document that was just saved to Mongo (REST create/update): becomes the resident copy
+    public void putTruck(Truck truck) {
+        synchronized (flushLock) {
+            trucks.put(truck.getId(), truck);
+            dirtyTrucks.remove(truck.getId());
+            persistedTrucks.put(truck.getId(), snapshot(truck));
+        }
+    }
+
+    public void putBin(Bin bin) {
+        synchronized (flushLock) {
+            bins.put(bin.getId(), bin);
+            dirtyBins.remove(bin.getId());
+            persistedBins.put(bin.getId(), snapshot(bin));
+        }
+    }
+
+    // REST update of a resident bin. The change is made on a copy and the whole copy is saved; only
+    // then does the resident bin take its fields, under the bin's lock (as the tick and sensor ingest
+    // use), so threads holding the resident instance never see it replaced. Returns the fill level
+    // the bin had just before. Nothing changes in memory if the save fails.
+    public Double updateBin(Bin bin, Consumer<Bin> change) {
+        synchronized (flushLock) { // No flush in between can write an older fill level over the saved one
+            Bin copy;
+            synchronized (bin) {
+                copy = copyOf(bin);
+            }
+            change.accept(copy);
+            Bin saved = binRepository.save(copy);
+            synchronized (bin) {
+                Double oldFillLevel = bin.getFillLevel();
+                bin.setName(saved.getName());
+                bin.setLocation(saved.getLocation());
+                bin.setPosition(saved.getPosition());
+                bin.setCapacity(saved.getCapacity());
+                bin.setFillLevel(saved.getFillLevel());
+                bin.setWasteType(saved.getWasteType());
+                bin.setStatus(saved.getStatus());
+                dirtyBins.remove(bin.getId()); // Mongo now has exactly the resident state
+                persistedBins.put(bin.getId(), snapshot(bin));
+                return oldFillLevel;
+            }
+        }
+    }
+
+    public void removeTruck(String id) {
+        synchronized (flushLock) {
+            trucks.remove(id);
+            dirtyTrucks.remove(id);
+            persistedTrucks.remove(id);
+        }
+    }
+
+    public void removeBin(String id) {
+        synchronized (flushLock) {
+            bins.remove(id);
+            dirtyBins.remove(id);
+            persistedBins.remove(id);
+        }
+    }
+
+    // Call while holding TruckService.simulationLock: the copy taken here is what gets saved
+    public void markTruckDirty(Truck truck) {
+        dirtyTrucks.put(truck.getId(), snapshot(truck));
+        requestFlushIfOverThreshold();
+    }
+
+    public void markTrucksDirty(Iterable<Truck> changedTrucks) {
+        changedTrucks.forEach(truck -> dirtyTrucks.put(truck.getId(), snapshot(truck)));
+        requestFlushIfOverThreshold();
+    }
+
+    public void markBinDirty(Bin bin) {
+        synchronized (bin) { // Same lock as the tick emptying it and BinService.ingestReadings, so copies land in order
+            dirtyBins.put(bin.getId(), snapshot(bin));
+        }
+        requestFlushIfOverThreshold();
+    }
+
+    // =====================================================
+    // WRITE-BEHIND
+    // =====================================================
+    public void flush() {
+        synchronized (flushLock) {
+            earlyFlushQueued.set(false);
+            Map<String, PersistedTruck> truckBatch = drain(dirtyTrucks, trucks);
+            Map<String, PersistedBin> binBatch = drain(dirtyBins, bins);
+            try {
+                int truckWrites = writeTruckDeltas(truckBatch);
+                int binWrites = writeBinDeltas(binBatch);
+                if (truckWrites > 0 || binWrites > 0) {
+                    System.out.println("Flushed " + truckWrites + " truck and " + binWrites + " bin updates.");
+                }
+            } catch (RuntimeException e) {
+                // Retry on the next flush, unless a newer copy came in meanwhile; the deltas are
+                // recomputed against the last successful write
+                truckBatch.forEach(dirtyTrucks::putIfAbsent);
+                binBatch.forEach(dirtyBins::putIfAbsent);
+                throw e;
+            }
+            persistedTrucks.putAll(truckBatch);
+            persistedBins.putAll(binBatch);
+        }
+    }
+
+    // One unordered bulk call: $set/$unset of the changed fields (all of them when Mongo's copy is
+    // unknown). Everything written comes from the copies, never from the live objects.
+    private int writeTruckDeltas(Map<String, PersistedTruck> batch) {
+        if (batch.isEmpty()) return 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Truck.class);
+        int writes = 0;
+        for (Map.Entry<String, PersistedTruck> entry : batch.entrySet()) {
+            String id = entry.getKey();
+            PersistedTruck current = entry.getValue();
+            PersistedTruck persisted = persistedTrucks.get(id);
+            boolean all = persisted == null;
+            Update update = new Update();
+            if (all || !Objects.equals(current.location(), persisted.location())) {
+                setOrUnset(update, "currentLocation", current.location());
+                setOrUnset(update, "position", GeoPositionListener.toPoint(current.location())); // Keep the 2dsphere point in step
+            }
+            if (all || !Objects.equals(current.fillLevel(), persisted.fillLevel())) setOrUnset(update, "currentFillLevel", current.fillLevel());
+            if (all || current.status() != persisted.status()) setOrUnset(update, "status", current.status());
+            if (all || current.route() != persisted.route()) {
+                setOrUnset(update, "route", routeDocument(current));
+            } else if (current.route() != null && current.routeNext() != persisted.routeNext()) {
+                update.set("route.next", current.routeNext()); // Waypoint reached: only the cursor moves
+            }
+            if (update.getUpdateObject().isEmpty()) continue;
+            bulk.updateOne(byId(id), update);
+            writes++;
+        }
+        if (writes > 0) bulk.execute();
+        return writes;
+    }
+
+    private int writeBinDeltas(Map<String, PersistedBin> batch) {
+        if (batch.isEmpty()) return 0;
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Bin.class);
+        int writes = 0;
+        for (Map.Entry<String, PersistedBin> entry : batch.entrySet()) {
+            String id = entry.getKey();
+            PersistedBin current = entry.getValue();
+            PersistedBin persisted = persistedBins.get(id);
+            boolean all = persisted == null;
+            Update update = new Update();
+            if (all || !Objects.equals(current.fillLevel(), persisted.fillLevel())) setOrUnset(update, "fillLevel", current.fillLevel());
+            if (all || current.status() != persisted.status()) setOrUnset(update, "status", current.status());
+            if (update.getUpdateObject().isEmpty()) continue;
+            bulk.updateOne(byId(id), update);
+            writes++;
+        }
+        if (writes > 0) bulk.execute();
+        return writes;
+    }
+
+    // The route as of the copy: converted now, with the cursor the copy saw rather than the live one
+    // (a route's waypoints never change, only its cursor moves)
+    private Object routeDocument(PersistedTruck truck) {
+        if (truck.route() == null) return null;
+        Object route = mongoTemplate.getConverter().convertToMongoType(truck.route(), TypeInformation.of(WaypointRoute.class));
+        if (route instanceof Document document) document.put("next", truck.routeNext());
+        return route;
+    }
+
+    // Saved before WaypointRoute: stored as a route in place of the old coordinate list. Runs
+    // before the truck is resident, and only touches documents still in the old format.
+    private void convertLegacyRoute(Truck truck) {
+        if (truck.getRoute() == null) truck.setCurrentRoute(truck.getLegacyRoute());
+        truck.setLegacyRoute(null);
+        Query legacy = Query.query(Criteria.where("id").is(truck.getId()).and("currentRoute").exists(true));
+        mongoTemplate.updateFirst(legacy, new Update().set("route", truck.getRoute()).unset("currentRoute"), Truck.class);
+    }
+
+    // Documents saved before the 2dsphere indexes have no GeoJSON position yet: derive it from the
+    // lat/long location in one server-side pipeline update
+    private void backfillPositions(String collection, String locationField) {
+        Document filter = new Document("position", new Document("$exists", false))
+                .append(locationField, new Document("$ne", null));
+        Document point = new Document("type", "Point")
+                .append("coordinates", List.of("$" + locationField + ".longitude", "$" + locationField + ".latitude"));
+        long updated = mongoTemplate.getCollection(collection)
+                .updateMany(filter, List.of(new Document("$set", new Document("position", point))))
+                .getModifiedCount();
+        if (updated > 0) {
+            System.out.println("Added GeoJSON positions to " + updated + " " + collection + ".");
+        }
+    }
+
+    private static Query byId(String id) {
+        return Query.query(Criteria.where("id").is(id));
+    }
+
+    // Null fields are left out of saved documents, so a field that became null is removed
+    private static void setOrUnset(Update update, String field, Object value) {
+        if (value != null) {
+            update.set(field, value);
+        } else {
+            update.unset(field);
+        }
+    }
+
+    private static PersistedTruck snapshot(Truck truck) {
+        Bin.Location location = null;
+        if (truck.getCurrentLocation() != null) {
+            location = new Bin.Location();
+            location.setLatitude(truck.getCurrentLocation().getLatitude());
+            location.setLongitude(truck.getCurrentLocation().getLongitude());
+        }
+        WaypointRoute route = truck.getRoute();
+        return new PersistedTruck(location, truck.getCurrentFillLevel(), truck.getStatus(), route, route != null ? route.getNext() : 0);
+    }
+
+    private static PersistedBin snapshot(Bin bin) {
+        return new PersistedBin(bin.getFillLevel(), bin.getStatus());
+    }
+
+    private static Bin copyOf(Bin bin) {
+        Bin copy = new Bin();
+        copy.setId(bin.getId());
+        copy.setName(bin.getName());
+        if (bin.getLocation() != null) {
+            Bin.Location location = new Bin.Location();
+            location.setLatitude(bin.getLocation().getLatitude());
+            location.setLongitude(bin.getLocation().getLongitude());
+            copy.setLocation(location);
+        }
+        copy.setCapacity(bin.getCapacity());
+        copy.setFillLevel(bin.getFillLevel());
+        copy.setWasteType(bin.getWasteType());
+        copy.setStatus(bin.getStatus());
+        return copy;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) { // Keep the scheduled writer alive; dirty copies are kept for the next attempt
+            System.err.println("Fleet state flush failed: " + e.getMessage());
+        }
+    }
+
+    private void requestFlushIfOverThreshold() {
+        if (dirtyTrucks.size() + dirtyBins.size() >= dirtyThreshold
+                && !flusher.isShutdown() && earlyFlushQueued.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    // Takes the dirty copies of documents that are still resident (deleted ones are dropped)
+    private static <S> Map<String, S> drain(Map<String, S> dirty, Map<String, ?> resident) {
+        Map<String, S> batch = new HashMap<>();
+        for (String id : List.copyOf(dirty.keySet())) {
+            S copy = dirty.remove(id);
+            if (copy != null && resident.containsKey(id)) batch.put(id, copy);
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,96 @@
+package com.smartwaste.adminbackend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartwaste.adminbackend.model.Truck;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Live truck positions for the map, as server-sent events (/api/v1/trucks/stream).
+//
+// A new client gets one "snapshot" with every truck's compact position; after that each tick
+// sends one "delta" with only the trucks whose position, fill or status changed, plus removed
+// truck ids. The SSE id is a sequence number that grows by one per event, so a client can spot a
+// gap; reconnecting with Last-Event-ID replays what it missed, or sends a fresh snapshot if it
+// fell too far behind. Payloads hold absolute values, so applying one twice is harmless.
+@Service
+public class FleetStreamService {
+
+    @Autowired
+    private FleetStateService fleetState;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Deltas kept for resume (one per tick), and SSE connection lifetime
+    @Value("${streams.fleet.replay-capacity:120}")
+    private int replayCapacity;
+    @Value("${streams.emitter-timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+    // Events waiting for one client before it counts as fallen behind and is dropped
+    @Value("${streams.subscriber-queue-capacity:500}")
+    private int subscriberQueueCapacity;
+
+    public record TruckPosition(String id, Double lat, Double lon, Double fill, Truck.TruckStatus status) {}
+    public record FleetSnapshot(List<TruckPosition> trucks) {}
+    public record FleetDelta(List<TruckPosition> trucks, List<String> removed) {}
+
+    private EventBroadcaster fleetStream;
+    private final Map<String, TruckPosition> published = new ConcurrentHashMap<>(); // Last state sent per truck
+
+    @PostConstruct
+    private void start() {
+        fleetStream = new EventBroadcaster("fleet", objectMapper, replayCapacity, subscriberQueueCapacity, emitterTimeoutMs);
+    }
+
+    // The loaded trucks reach clients already connected as one delta
+    @EventListener
+    public void publishLoadedTrucks(FleetStateService.StateLoaded loaded) {
+        publishChanges(fleetState.getTrucks());
+    }
+
+    @PreDestroy
+    private void stop() {
+        fleetStream.shutdown();
+    }
+
+    public SseEmitter subscribe(String lastEventId) {
+        return fleetStream.subscribe(lastEventId, () -> new FleetSnapshot(new ArrayList<>(published.values())));
+    }
+
+    // Called by TruckService after each tick, fast-forward or truck write
+    public void publishChanges(Iterable<Truck> changedTrucks) {
+        List<TruckPosition> changed = new ArrayList<>();
+        for (Truck truck : changedTrucks) {
+            TruckPosition position = positionOf(truck);
+            if (!Objects.equals(published.put(truck.getId(), position), position)) {
+                changed.add(position);
+            }
+        }
+        if (!changed.isEmpty()) {
+            fleetStream.publish("delta", new FleetDelta(changed, List.of()));
+        }
+    }
+
+    public void publishRemoved(String truckId) {
+        if (published.remove(truckId) != null) {
+            fleetStream.publish("delta", new FleetDelta(List.of(), List.of(truckId)));
+        }
+    }
+
+    private static TruckPosition positionOf(Truck truck) {
+        Double lat = truck.getCurrentLocation() != null ? truck.getCurrentLocation().getLatitude() : null;
+        Double lon = truck.getCurrentLocation() != null ? truck.getCurrentLocation().getLongitude() : null;
+        return new TruckPosition(truck.getId(), lat, lon, truck.getCurrentFillLevel(), truck.getStatus());
+    }
+}
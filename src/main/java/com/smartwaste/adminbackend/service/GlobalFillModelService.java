@@ -0,0 +1,300 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.Bin;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.tribuo.Example;
+import org.tribuo.Model;
+import org.tribuo.Prediction;
+import org.tribuo.regression.Regressor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+
+// Fleet-wide fill forecasting: one model per waste type, shared by every bin of that type,
+// instead of one model per bin.
+//
+// The features are the per-bin model's time features plus the bin's own attributes: capacity and
+// the grid cell it stands in (one indicator feature per cell, cellDegrees wide). A model is
+// trained once over the hourly fill history of the type's bins (simulated history for bins that
+// have too little), so training cost and memory no longer grow with the bin count and a brand new
+// bin is forecast right away. The benchmark compares both approaches on held-out readings.
+@Service
+public class GlobalFillModelService {
+
+    private static final String MODEL_PREFIX = "global-"; // Registry names; never a Mongo ObjectId
+    private static final long BENCHMARK_SEED = 7L;
+    private static final long TRAINING_SAMPLE_SEED = 31L; // Same bins on every retrain while the fleet is unchanged
+
+    @Autowired
+    private FleetStateService fleetState;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private BinHistoryService binHistory;
+
+    @Autowired
+    private TrainingJobService trainingJobs;
+
+    // Training data: days of history per bin, fewer hourly points than this = use simulated history,
+    // and at most this many bins per waste type (a random sample beyond that)
+    @Value("${ml.global.history-days:14}")
+    private int historyDays;
+    @Value("${ml.global.min-history-points:24}")
+    private int minHistoryPoints;
+    @Value("${ml.global.max-training-bins:5000}")
+    private int maxTrainingBins;
+    // Location cell size in degrees (0.01 = ~1.1 km)
+    @Value("${ml.global.cell-degrees:0.01}")
+    private double cellDegrees;
+
+    // Accuracy on held-out readings (fill %), serialized model size, training and prediction time
+    public record ApproachResult(int models, double rmse, double mae, long modelBytes, double trainMs,
+                                 double predictMicrosPerExample) {}
+
+    public record BenchmarkResult(LocalDateTime ranAt, int bins, int trainExamples, int testExamples,
+                                  ApproachResult perBin, ApproachResult global,
+                                  int unseenBins, double globalRmseOnUnseenBins,
+                                  long perBinBytesProjectedForFleet, int fleetSize, long elapsedMs) {}
+
+    private record Reading(LocalDateTime time, double fillLevel) {}
+
+    private volatile BenchmarkResult lastBenchmark;
+
+    // Starts a background job training one model per waste type in use; returns the job id
+    public String submitTraining() {
+        List<String> types = new ArrayList<>();
+        for (Bin.WasteType type : binsByType(fleetState.getBins()).keySet()) types.add(type.name());
+        return trainingJobs.submit("global-fill", types, type -> train(Bin.WasteType.valueOf(type)));
+    }
+
+    public String submitBenchmark(int sampleBins) {
+        return trainingJobs.submit("global-benchmark", List.of("benchmark"), unit -> {
+            lastBenchmark = runBenchmark(sampleBins);
+        });
+    }
+
+    public Optional<BenchmarkResult> getLastBenchmark() {
+        return Optional.ofNullable(lastBenchmark);
+    }
+
+    // Forecasts for the bin at each time (one batched predict), or empty when its type has no model yet
+    public Optional<double[]> predict(Bin bin, List<LocalDateTime> times) {
+        Optional<Model<Regressor>> model = modelRegistry.get(modelName(typeOf(bin)));
+        if (model.isEmpty()) return Optional.empty();
+        List<Example<Regressor>> examples = new ArrayList<>(times.size());
+        for (LocalDateTime time : times) examples.add(example(bin, time, 0.0)); // dummy output
+        return Optional.of(fillLevels(model.get().predict(examples)));
+    }
+
+    // =====================================================
+    // TRAINING
+    // =====================================================
+    // Runs on a training worker
+    private void train(Bin.WasteType type) {
+        List<Bin> bins = binsByType(fleetState.getBins()).getOrDefault(type, List.of());
+        if (bins.size() > maxTrainingBins) {
+            bins = new ArrayList<>(bins);
+            Collections.shuffle(bins, new Random(TRAINING_SAMPLE_SEED));
+            bins = bins.subList(0, maxTrainingBins);
+        }
+        List<Example<Regressor>> examples = new ArrayList<>();
+        for (Bin bin : bins) {
+            for (Reading reading : readingsOf(bin)) examples.add(example(bin, reading.time(), reading.fillLevel()));
+        }
+        if (examples.isEmpty()) {
+            throw new RuntimeException("No training data for " + type + " bins.");
+        }
+        long start = System.currentTimeMillis();
+        Model<Regressor> model = PredictionService.trainRegressor(examples, "Fleet fill history of " + type + " bins");
+        modelRegistry.put(modelName(type), model);
+        System.out.println("Global " + type + " model trained on " + examples.size() + " readings from " + bins.size()
+                + " bins in " + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    // =====================================================
+    // BENCHMARK
+    // =====================================================
+    // Each sampled bin's readings are split in time: the older 75% train, the newer 25% test. Per-bin
+    // models train on their own bin only; the global models on every training bin of their type.
+    // A fifth of the sampled bins are kept out of global training entirely, to measure new bins.
+    private BenchmarkResult runBenchmark(int sampleBins) {
+        long start = System.currentTimeMillis();
+        List<Bin> bins = fleetState.getBins();
+        int fleetSize = bins.size();
+        Collections.shuffle(bins, new Random(BENCHMARK_SEED));
+        bins = bins.subList(0, Math.min(sampleBins, bins.size()));
+        int unseenCount = bins.size() >= 5 ? bins.size() / 5 : 0;
+        List<Bin> unseen = bins.subList(0, unseenCount);
+        List<Bin> seen = bins.subList(unseenCount, bins.size());
+
+        Map<String, List<Reading>> train = new HashMap<>(); // By bin id
+        Map<String, List<Reading>> test = new HashMap<>();
+        for (Bin bin : bins) {
+            List<Reading> readings = new ArrayList<>(readingsOf(bin));
+            readings.sort(Comparator.comparing(Reading::time));
+            int split = (int) Math.round(readings.size() * 0.75);
+            train.put(bin.getId(), readings.subList(0, split));
+            test.put(bin.getId(), readings.subList(split, readings.size()));
+        }
+        int trainExamples = seen.stream().mapToInt(bin -> train.get(bin.getId()).size()).sum();
+        int testExamples = seen.stream().mapToInt(bin -> test.get(bin.getId()).size()).sum();
+
+        // Per-bin: one model per seen bin, on the time features only (as PredictionService trains them)
+        Errors perBinErrors = new Errors();
+        long perBinBytes = 0, perBinTrainNanos = 0, perBinPredictNanos = 0;
+        int perBinModels = 0;
+        for (Bin bin : seen) {
+            List<Example<Regressor>> trainSet = new ArrayList<>();
+            for (Reading r : train.get(bin.getId())) trainSet.add(timeExample(r));
+            if (trainSet.isEmpty() || test.get(bin.getId()).isEmpty()) continue;
+            long t0 = System.nanoTime();
+            Model<Regressor> model = PredictionService.trainRegressor(trainSet, "Benchmark, bin " + bin.getId());
+            perBinTrainNanos += System.nanoTime() - t0;
+            perBinBytes += model.serialize().getSerializedSize();
+            perBinModels++;
+
+            List<Example<Regressor>> testSet = new ArrayList<>();
+            for (Reading r : test.get(bin.getId())) testSet.add(timeExample(r));
+            long t1 = System.nanoTime();
+            double[] predicted = fillLevels(model.predict(testSet));
+            perBinPredictNanos += System.nanoTime() - t1;
+            perBinErrors.add(predicted, test.get(bin.getId()));
+        }
+
+        // Global: one model per waste type over all seen bins of that type
+        Errors globalErrors = new Errors();
+        Errors unseenErrors = new Errors();
+        long globalBytes = 0, globalTrainNanos = 0, globalPredictNanos = 0;
+        int globalModels = 0;
+        for (Map.Entry<Bin.WasteType, List<Bin>> group : binsByType(seen).entrySet()) {
+            List<Example<Regressor>> trainSet = new ArrayList<>();
+            for (Bin bin : group.getValue()) {
+                for (Reading r : train.get(bin.getId())) trainSet.add(example(bin, r.time(), r.fillLevel()));
+            }
+            if (trainSet.isEmpty()) continue;
+            long t0 = System.nanoTime();
+            Model<Regressor> model = PredictionService.trainRegressor(trainSet, "Benchmark, " + group.getKey() + " bins");
+            globalTrainNanos += System.nanoTime() - t0;
+            globalBytes += model.serialize().getSerializedSize();
+            globalModels++;
+
+            for (Bin bin : group.getValue()) {
+                if (test.get(bin.getId()).isEmpty()) continue;
+                long t1 = System.nanoTime();
+                double[] predicted = fillLevels(model.predict(examples(bin, test.get(bin.getId()))));
+                globalPredictNanos += System.nanoTime() - t1;
+                globalErrors.add(predicted, test.get(bin.getId()));
+            }
+            for (Bin bin : unseen) {
+                if (typeOf(bin) != group.getKey() || test.get(bin.getId()).isEmpty()) continue;
+                unseenErrors.add(fillLevels(model.predict(examples(bin, test.get(bin.getId())))), test.get(bin.getId()));
+            }
+        }
+
+        int bytesPerBin = perBinModels > 0 ? (int) (perBinBytes / perBinModels) : 0;
+        BenchmarkResult result = new BenchmarkResult(LocalDateTime.now(), bins.size(), trainExamples, testExamples,
+                new ApproachResult(perBinModels, perBinErrors.rmse(), perBinErrors.mae(), perBinBytes,
+                        perBinTrainNanos / 1e6, perBinErrors.count > 0 ? perBinPredictNanos / 1e3 / perBinErrors.count : 0),
+                new ApproachResult(globalModels, globalErrors.rmse(), globalErrors.mae(), globalBytes,
+                        globalTrainNanos / 1e6, globalErrors.count > 0 ? globalPredictNanos / 1e3 / globalErrors.count : 0),
+                unseen.size(), unseenErrors.rmse(), (long) bytesPerBin * fleetSize, fleetSize,
+                System.currentTimeMillis() - start);
+        System.out.println("Fill model benchmark: per-bin RMSE " + result.perBin().rmse() + " vs global "
+                + result.global().rmse() + " (" + result.elapsedMs() + " ms).");
+        return result;
+    }
+
+    private static final class Errors {
+        double squared, absolute;
+        int count;
+
+        void add(double[] predicted, List<Reading> actual) {
+            for (int i = 0; i < predicted.length; i++) {
+                double error = predicted[i] - actual.get(i).fillLevel();
+                squared += error * error;
+                absolute += Math.abs(error);
+                count++;
+            }
+        }
+
+        double rmse() { return count > 0 ? Math.sqrt(squared / count) : Double.NaN; }
+        double mae() { return count > 0 ? absolute / count : Double.NaN; }
+    }
+
+    // =====================================================
+    // FEATURES AND DATA
+    // =====================================================
+    private Example<Regressor> example(Bin bin, LocalDateTime time, double fillLevel) {
+        Map<String, Double> features = PredictionService.createFeatures(time);
+        features.put("capacityHundredLitres", bin.getCapacity() != null ? bin.getCapacity() / 100.0 : 0.0);
+        if (bin.getLocation() != null) {
+            long row = (long) Math.floor(bin.getLocation().getLatitude() / cellDegrees);
+            long col = (long) Math.floor(bin.getLocation().getLongitude() / cellDegrees);
+            features.put("cell=" + row + "_" + col, 1.0); // Cells never seen in training simply don't contribute
+        }
+        return PredictionService.createExampleFromFeatures(features, fillLevel);
+    }
+
+    private List<Example<Regressor>> examples(Bin bin, List<Reading> readings) {
+        List<Example<Regressor>> examples = new ArrayList<>(readings.size());
+        for (Reading r : readings) examples.add(example(bin, r.time(), r.fillLevel()));
+        return examples;
+    }
+
+    private static Example<Regressor> timeExample(Reading reading) {
+        return PredictionService.createExampleFromFeatures(PredictionService.createFeatures(reading.time()), reading.fillLevel());
+    }
+
+    // Hourly averages of the bin's stored history, or its simulated history when there is too little
+    private List<Reading> readingsOf(Bin bin) {
+        Instant now = Instant.now();
+        List<Reading> readings = new ArrayList<>();
+        for (BinHistoryService.FillSummary hour : binHistory.getDownsampled(bin.getId(),
+                now.minus(Duration.ofDays(historyDays)), now, Duration.ofHours(1))) {
+            readings.add(new Reading(LocalDateTime.ofInstant(hour.start(), ZoneId.systemDefault()), hour.average()));
+        }
+        if (readings.size() >= minHistoryPoints) return readings;
+        readings.clear();
+        for (PredictionService.FillSample sample : PredictionService.simulatedHistory(bin.getId())) {
+            readings.add(new Reading(sample.time(), sample.fillLevel()));
+        }
+        return readings;
+    }
+
+    private static Map<Bin.WasteType, List<Bin>> binsByType(List<Bin> bins) {
+        Map<Bin.WasteType, List<Bin>> byType = new EnumMap<>(Bin.WasteType.class);
+        for (Bin bin : bins) byType.computeIfAbsent(typeOf(bin), type -> new ArrayList<>()).add(bin);
+        return byType;
+    }
+
+    private static Bin.WasteType typeOf(Bin bin) {
+        return bin.getWasteType() != null ? bin.getWasteType() : Bin.WasteType.MIXED;
+    }
+
+    private static String modelName(Bin.WasteType type) {
+        return MODEL_PREFIX + type.name();
+    }
+
+    private static double[] fillLevels(List<Prediction<Regressor>> predictions) {
+        double[] values = new double[predictions.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.max(0.0, Math.min(100.0, predictions.get(i).getOutput().getValues()[0]));
+        }
+        return values;
+    }
+}
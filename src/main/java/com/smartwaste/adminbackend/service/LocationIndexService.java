@@ -0,0 +1,125 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.model.Truck;
+import com.smartwaste.adminbackend.routing.SpatialGrid;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+// In-memory positions of bins and trucks, so "which bin is at this waypoint" and "closest IDLE
+// truck" are answered without pulling whole collections from Mongo. Filled once the fleet state
+// has loaded, then kept current by BinService / TruckService (and routing) on every write.
+@Service
+public class LocationIndexService {
+
+    private static final double SAME_LOCATION_TOLERANCE = 1e-6; // Degrees, same as TruckService.isLocationEqual
+
+    @Autowired
+    private FleetStateService fleetState; // Already holds every bin and truck, so startup needs no extra queries
+
+    // Grid cell size in degrees (0.005 = ~550 m)
+    @Value("${location-index.cell-degrees:0.005}")
+    private double cellDegrees;
+
+    private SpatialGrid bins;
+    private SpatialGrid trucks;
+    private final Map<String, Truck.TruckStatus> truckStatuses = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void createIndex() {
+        bins = new SpatialGrid(cellDegrees);
+        trucks = new SpatialGrid(cellDegrees);
+    }
+
+    @EventListener
+    public void loadIndex(FleetStateService.StateLoaded loaded) {
+        long start = System.currentTimeMillis();
+        fleetState.getBins().forEach(this::indexBin);
+        fleetState.getTrucks().forEach(this::indexTruck);
+        System.out.println("Location index loaded with " + bins.size() + " bins and " + trucks.size() + " trucks in "
+                + (System.currentTimeMillis() - start) + " ms.");
+    }
+
+    // =====================================================
+    // WRITES (call after the document is saved)
+    // =====================================================
+    public void indexBin(Bin bin) {
+        if (bin.getId() == null) return;
+        if (bin.getLocation() == null) {
+            bins.remove(bin.getId());
+        } else {
+            bins.put(bin.getId(), bin.getLocation().getLatitude(), bin.getLocation().getLongitude());
+        }
+    }
+
+    public void removeBin(String binId) {
+        bins.remove(binId);
+    }
+
+    public void indexTruck(Truck truck) {
+        if (truck.getId() == null) return;
+        if (truck.getStatus() != null) {
+            truckStatuses.put(truck.getId(), truck.getStatus());
+        } else {
+            truckStatuses.remove(truck.getId());
+        }
+        if (truck.getCurrentLocation() == null) {
+            trucks.remove(truck.getId());
+        } else {
+            trucks.put(truck.getId(), truck.getCurrentLocation().getLatitude(), truck.getCurrentLocation().getLongitude());
+        }
+    }
+
+    public void indexTrucks(Iterable<Truck> updatedTrucks) {
+        updatedTrucks.forEach(this::indexTruck);
+    }
+
+    public void removeTruck(String truckId) {
+        trucks.remove(truckId);
+        truckStatuses.remove(truckId);
+    }
+
+    // =====================================================
+    // QUERIES (ids only; fetch the documents you actually need)
+    // =====================================================
+
+    // Bin sitting exactly at this location (within floating point tolerance)
+    public Optional<String> findBinAt(Bin.Location location) {
+        if (location == null) return Optional.empty();
+        return bins.findAt(location.getLatitude(), location.getLongitude(), SAME_LOCATION_TOLERANCE);
+    }
+
+    public List<String> findNearestBins(Bin.Location location, int count) {
+        return bins.nearest(location.getLatitude(), location.getLongitude(), count, null);
+    }
+
+    public List<String> findBinsWithin(Bin.Location location, double radiusKm) {
+        return bins.withinRadius(location.getLatitude(), location.getLongitude(), radiusKm);
+    }
+
+    public List<String> findBinsInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        return bins.withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    // Closest trucks with the given status (null = any), leaving out one truck (e.g. the one asking)
+    public List<String> findNearestTrucks(Bin.Location location, int count, Truck.TruckStatus status, String excludeTruckId) {
+        return trucks.nearest(location.getLatitude(), location.getLongitude(), count,
+                id -> !id.equals(excludeTruckId) && (status == null || truckStatuses.get(id) == status));
+    }
+
+    public List<String> findTrucksWithin(Bin.Location location, double radiusKm) {
+        return trucks.withinRadius(location.getLatitude(), location.getLongitude(), radiusKm);
+    }
+
+    public List<String> findTrucksInBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+        return trucks.withinBox(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+}
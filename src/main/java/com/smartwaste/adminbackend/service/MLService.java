@@ -2,6 +2,7 @@ package com.smartwaste.adminbackend.service;
 
 import com.smartwaste.adminbackend.model.DatasetInfo;
 import com.smartwaste.adminbackend.repository.DatasetInfoRepository;
+import com.smartwaste.adminbackend.repository.KeysetPager;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
@@ -10,12 +11,17 @@ import org.springframework.web.multipart.MultipartFile; // For file uploads
 import java.io.IOException; // For potential file errors
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 public class MLService {
 
     @Autowired
     private DatasetInfoRepository datasetInfoRepository;
+    @Autowired
+    private KeysetPager pager;
+    @Autowired
+    private TrainingJobService trainingJobs;
     // --- Removed AuditLogService ---
 
 
@@ -47,6 +53,12 @@ public class MLService {
         return datasetInfoRepository.findAll(Sort.by(Sort.Direction.DESC, "uploadTimestamp"));
     }
 
+    // One page, newest upload first, optionally with only some fields
+    public KeysetPager.KeysetPage<?> listDatasetsPage(String cursor, Integer limit, String fields) {
+        Set<String> selected = pager.parseFields(DatasetInfo.class, fields);
+        return pager.select(pager.newestFirst(DatasetInfo.class, null, "uploadTimestamp", cursor, limit, selected), selected);
+    }
+
     // Delete dataset metadata (and ideally the file in a real system)
     public boolean deleteDataset(String id) {
         Optional<DatasetInfo> datasetOpt = datasetInfoRepository.findById(id);
@@ -62,32 +74,57 @@ public class MLService {
     }
 
 
-    // Simulate triggering model training
+    // Simulate triggering model training. Returns at once; the training runs as a background job
+    // (see TrainingJobService) and the dataset status moves TRAINING -> TRAINED, or to ERROR if the
+    // training fails and CANCELLED if the job is cancelled before it runs.
     public String triggerModelTraining(String datasetId, String modelType) {
         Optional<DatasetInfo> datasetOpt = datasetInfoRepository.findById(datasetId);
         if (datasetOpt.isEmpty()) {
             return "Error: Dataset not found.";
         }
         DatasetInfo dataset = datasetOpt.get();
+        dataset.setStatus("TRAINING");
+        datasetInfoRepository.save(dataset);
+
+        String jobId;
+        try {
+            jobId = trainingJobs.submit("dataset:" + modelType, List.of(datasetId), id -> simulateTraining(id, modelType),
+                    id -> setDatasetStatus(id, "CANCELLED"));
+        } catch (RuntimeException e) { // Workers shutting down
+            setDatasetStatus(datasetId, "ERROR");
+            throw e;
+        }
 
-        // Simulate training process (e.g., takes a few seconds)
+        // --- Removed Audit Logging ---
+
+        // In a real system, return model ID, metrics, status, etc.
+        return "Simulated training for '" + modelType + "' using dataset '" + dataset.getFilename() + "' started (job " + jobId + ").";
+    }
+
+    // Runs on a training worker
+    private void simulateTraining(String datasetId, String modelType) {
+        DatasetInfo dataset = datasetInfoRepository.findById(datasetId)
+                .orElseThrow(() -> new RuntimeException("Dataset not found."));
         System.out.println("Simulating training model '" + modelType + "' using dataset: " + dataset.getFilename() + " (ID: " + datasetId + ")");
         try {
-            dataset.setStatus("TRAINING");
-            datasetInfoRepository.save(dataset);
             Thread.sleep(3000); // Simulate training time (3 seconds)
             dataset.setStatus("TRAINED"); // Mark as trained (simulation)
             datasetInfoRepository.save(dataset);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            dataset.setStatus("ERROR");
-            datasetInfoRepository.save(dataset);
-            return "Error: Training simulation interrupted.";
+            setDatasetStatus(datasetId, "ERROR");
+            throw new RuntimeException("Training simulation interrupted.");
+        } catch (RuntimeException e) { // Never leave the dataset TRAINING
+            setDatasetStatus(datasetId, "ERROR");
+            throw e;
         }
+    }
 
-        // --- Removed Audit Logging ---
-
-        // In a real system, return model ID, metrics, status, etc.
-        return "Simulated training for '" + modelType + "' using dataset '" + dataset.getFilename() + "' completed.";
+    // Best effort: the dataset may have been deleted meanwhile
+    private void setDatasetStatus(String datasetId, String status) {
+        datasetInfoRepository.findById(datasetId).ifPresent(dataset -> {
+            dataset.setStatus(status);
+            datasetInfoRepository.save(dataset);
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+package com.smartwaste.adminbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.tribuo.Model;
+import org.tribuo.regression.Regressor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Trained regression models by name (a bin id), kept on disk so they survive restarts, with only
+// the most recently used ones on the heap.
+//
+// Every stored model is written to the model directory (Tribuo protobuf format) before it becomes
+// visible, through a temp file and an atomic rename, so readers and restarts only ever see whole
+// models. Reads come from a size-bounded LRU; a miss loads the file once, however many requests
+// for that model are waiting on it. Storing a retrained model swaps it in atomically: a request
+// gets either the old model or the new one, never a mix, and a load that raced the swap never puts
+// the old model back.
+@Service
+public class ModelRegistry {
+
+    private static final String EXTENSION = ".tribuo";
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9_-]{1,128}");
+
+    @Value("${ml.model-dir:models}")
+    private String modelDir;
+    // Models kept in memory; the rest are read back from disk when needed
+    @Value("${ml.model-cache-size:1000}")
+    private int cacheSize;
+
+    public record RegistryStats(int cached, int capacity, long stored, long hits, long misses, long loads,
+                                long evictions) {}
+
+    private Path directory;
+    private final Map<String, CompletableFuture<Optional<Model<Regressor>>>> loading = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object(); // One store at a time, so file and cache always agree
+
+    // Guarded by itself (access order changes on every get)
+    private LinkedHashMap<String, Model<Regressor>> cache;
+    private final Map<String, Long> generations = new HashMap<>(); // Stores and removes per name, so a load can tell it raced one
+    private long hits, misses, loads, evictions;
+
+    @PostConstruct
+    private void start() throws IOException {
+        directory = Paths.get(modelDir).toAbsolutePath();
+        Files.createDirectories(directory);
+        cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Model<Regressor>> eldest) {
+                if (size() <= cacheSize) return false;
+                evictions++;
+                return true;
+            }
+        };
+        System.out.println("Model registry at " + directory + " with " + countStored() + " stored models.");
+    }
+
+    // The model, from memory or else from disk; empty when it was never trained
+    public Optional<Model<Regressor>> get(String name) {
+        synchronized (cache) {
+            Model<Regressor> model = cache.get(name);
+            if (model != null) {
+                hits++;
+                return Optional.of(model);
+            }
+            misses++;
+        }
+
+        CompletableFuture<Optional<Model<Regressor>>> mine = new CompletableFuture<>();
+        CompletableFuture<Optional<Model<Regressor>>> running = loading.putIfAbsent(name, mine);
+        if (running != null) return running.join(); // Someone is already reading this file
+
+        try {
+            long generationBefore;
+            synchronized (cache) {
+                generationBefore = generations.getOrDefault(name, 0L);
+            }
+            Optional<Model<Regressor>> loaded = read(name);
+            synchronized (cache) {
+                Model<Regressor> current = cache.get(name); // Stored while we were reading: that one is newer
+                if (current != null) {
+                    loaded = Optional.of(current);
+                } else if (loaded.isPresent() && generations.getOrDefault(name, 0L) == generationBefore) {
+                    cache.put(name, loaded.get());
+                }
+                if (loaded.isPresent()) loads++;
+            }
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(name, mine);
+        }
+    }
+
+    // Saves the model and makes it the one every later get returns
+    public void put(String name, Model<Regressor> model) {
+        synchronized (writeLock) {
+            Path file = fileFor(name);
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                model.serializeToFile(temp);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not save model " + name, e);
+            }
+            synchronized (cache) {
+                cache.put(name, model);
+                generations.merge(name, 1L, Long::sum); // A load of this name already under way won't cache the old model
+            }
+        }
+    }
+
+    public boolean contains(String name) {
+        synchronized (cache) {
+            if (cache.containsKey(name)) return true;
+        }
+        return Files.exists(fileFor(name));
+    }
+
+    public void remove(String name) {
+        synchronized (writeLock) {
+            try {
+                Files.deleteIfExists(fileFor(name));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not delete model " + name, e);
+            }
+            synchronized (cache) {
+                cache.remove(name);
+                generations.merge(name, 1L, Long::sum); // Kept after a remove: a slow load must still see it
+            }
+        }
+    }
+
+    public RegistryStats getStats() {
+        long stored = countStored();
+        synchronized (cache) {
+            return new RegistryStats(cache.size(), cacheSize, stored, hits, misses, loads, evictions);
+        }
+    }
+
+    // --- Helpers ---
+    private Optional<Model<Regressor>> read(String name) {
+        Path file = fileFor(name);
+        if (!Files.exists(file)) return Optional.empty();
+        try {
+            return Optional.of(Model.deserializeFromFile(file).castModel(Regressor.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load model " + name, e);
+        }
+    }
+
+    // Bin ids are Mongo ObjectIds and used as they are; anything else is encoded to stay a plain file name
+    private Path fileFor(String name) {
+        String fileName = SAFE_NAME.matcher(name).matches()
+                ? name
+                : "b64-" + Base64.getUrlEncoder().withoutPadding().encodeToString(name.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(fileName + EXTENSION);
+    }
+
+    private long countStored() {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).count();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.smartwaste.adminbackend.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-bin fill models that learn from every sensor reading as it arrives, instead of being
+// retrained from scratch.
+//
+// Each bin gets a recursive-least-squares fit on the same time features as the Tribuo models
+// (hour, weekday, weekend, plus a bias). A reading updates it in a few microseconds. The running
+// error of the predictions made just before each reading is tracked against the error the model
+// had right after it was fitted (a bin's fill/empty sawtooth never fits these features well, so an
+// absolute limit would flag almost every bin). When the error grows by driftRatio, and by at least
+// driftRmse, the bin is refitted from its stored fill history on the training workers (at most
+// once per cooldown, not as a listed training job) and the fresh model replaces the old one,
+// after the readings that arrived while it was being fitted are replayed into it. Until a bin has seen minSamples readings its
+// forecasts come from the trained Tribuo model instead.
+//
+// Kept in memory only: after a restart bins warm up again from new readings, or refit on drift.
+@Service
+public class OnlineFillModelService {
+
+    private static final double ERROR_SMOOTHING = 0.05; // Weight of the newest squared error in the running mean
+    private static final double INITIAL_VARIANCE = 1000.0; // Weak prior: the first readings dominate
+
+    @Autowired
+    private BinHistoryService binHistory;
+
+    @Autowired
+    private TrainingJobService trainingJobs;
+
+    @Value("${ml.online.forgetting:0.995}")
+    private double forgetting;
+    @Value("${ml.online.min-samples:24}")
+    private int minSamples;
+    @Value("${ml.online.drift-ratio:1.5}")
+    private double driftRatio;
+    @Value("${ml.online.drift-rmse:5}")
+    private double driftRmse;
+    @Value("${ml.online.refit-days:14}")
+    private int refitDays;
+    @Value("${ml.online.refit-cooldown-minutes:60}")
+    private long refitCooldownMinutes;
+
+    public record OnlineStats(int models, int warmModels, long updates, long refitsStarted, long refitsFinished) {}
+
+    private static final class BinModel {
+        final RecursiveLeastSquares rls;
+        double meanSquaredError;
+        double baselineRmse = -1; // Error once warm or right after the last refit; -1 until then
+        long samples;
+        boolean refitPending;
+        Instant lastRefit;
+        List<Observation> sinceRefit; // Readings since the refit started reading history, else null
+        boolean replaced; // Swapped out by a refit: observe goes to the new model
+
+        BinModel(RecursiveLeastSquares rls) {
+            this.rls = rls;
+        }
+    }
+
+    private record Observation(Instant time, double[] x, double fillLevel) {}
+
+    private final Map<String, BinModel> models = new ConcurrentHashMap<>();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong refitsStarted = new AtomicLong();
+    private final AtomicLong refitsFinished = new AtomicLong();
+
+    // Learns from one reading (time = when it was measured)
+    public void observe(String binId, double fillLevel, Instant time) {
+        double[] x = features(LocalDateTime.ofInstant(time, ZoneId.systemDefault()));
+        boolean refit;
+        while (true) {
+            BinModel model = models.computeIfAbsent(binId, id -> newModel());
+            synchronized (model) {
+                if (model.replaced) continue; // A refit swapped it while we waited for the lock
+                learn(model, x, fillLevel);
+                if (model.sinceRefit != null) model.sinceRefit.add(new Observation(time, x, fillLevel));
+                if (model.baselineRmse < 0 && model.samples >= minSamples) {
+                    model.baselineRmse = Math.sqrt(model.meanSquaredError);
+                }
+                refit = !model.refitPending && model.baselineRmse >= 0 && hasDrifted(model)
+                        && (model.lastRefit == null
+                            || Duration.between(model.lastRefit, Instant.now()).toMinutes() >= refitCooldownMinutes);
+                if (refit) model.refitPending = true;
+                break;
+            }
+        }
+        updates.incrementAndGet();
+        if (refit) {
+            refitsStarted.incrementAndGet();
+            trainingJobs.execute("bin-fill-refit", () -> refit(binId));
+        }
+    }
+
+    // Forecast for the given time, once the bin's model has seen enough readings
+    public Optional<Double> predict(String binId, LocalDateTime time) {
+        BinModel model = models.get(binId);
+        if (model == null) return Optional.empty();
+        double[] x = features(time);
+        synchronized (model) {
+            if (model.samples < minSamples) return Optional.empty();
+            return Optional.of(Math.max(0.0, Math.min(100.0, model.rls.predict(x))));
+        }
+    }
+
+    public void remove(String binId) {
+        models.remove(binId);
+    }
+
+    public OnlineStats getStats() {
+        int warm = 0;
+        for (BinModel model : models.values()) {
+            synchronized (model) {
+                if (model.samples >= minSamples) warm++;
+            }
+        }
+        return new OnlineStats(models.size(), warm, updates.get(), refitsStarted.get(), refitsFinished.get());
+    }
+
+    // Runs on a training worker: a fresh fit over the bin's recent history replaces the drifted model
+    private void refit(String binId) {
+        BinModel model = models.get(binId);
+        if (model == null) return; // Bin deleted meanwhile
+        synchronized (model) {
+            model.sinceRefit = new ArrayList<>();
+        }
+        Instant now = Instant.now();
+        BinModel fresh = newModel();
+        Set<BinHistoryService.FillPoint> history = new HashSet<>();
+        try {
+            binHistory.flush(); // Readings observed before sinceRefit started are then all in the history
+            for (BinHistoryService.FillPoint point : binHistory.getHistory(binId, now.minus(Duration.ofDays(refitDays)), now)) {
+                learn(fresh, features(LocalDateTime.ofInstant(point.time(), ZoneId.systemDefault())), point.fillLevel());
+                history.add(point);
+            }
+        } catch (RuntimeException e) { // Keep the old model; try again after the cooldown
+            synchronized (model) {
+                model.refitPending = false;
+                model.sinceRefit = null;
+                model.lastRefit = now;
+            }
+            throw e;
+        }
+        fresh.lastRefit = now;
+        fresh.baselineRmse = fresh.samples >= minSamples ? Math.sqrt(fresh.meanSquaredError) : -1;
+        synchronized (model) {
+            // History holds whole seconds; a reading both flushed and buffered is learnt once
+            for (Observation observation : model.sinceRefit) {
+                BinHistoryService.FillPoint point = new BinHistoryService.FillPoint(
+                        observation.time().truncatedTo(ChronoUnit.SECONDS), observation.fillLevel());
+                if (!history.contains(point)) learn(fresh, observation.x(), observation.fillLevel());
+            }
+            model.sinceRefit = null;
+            model.replaced = true;
+            models.replace(binId, model, fresh); // Only if the bin still exists
+        }
+        refitsFinished.incrementAndGet();
+    }
+
+    private boolean hasDrifted(BinModel model) {
+        double rmse = Math.sqrt(model.meanSquaredError);
+        return rmse > model.baselineRmse * driftRatio && rmse > model.baselineRmse + driftRmse;
+    }
+
+    private BinModel newModel() {
+        return new BinModel(new RecursiveLeastSquares(PredictionService.FEATURE_COUNT + 1, forgetting, INITIAL_VARIANCE));
+    }
+
+    private void learn(BinModel model, double[] x, double fillLevel) {
+        double error = model.rls.update(x, fillLevel);
+        model.samples++;
+        long warmUp = minSamples / 2; // Errors while the fit is still forming say nothing about drift
+        if (model.samples <= warmUp) return;
+        model.meanSquaredError = model.samples == warmUp + 1
+                ? error * error
+                : (1 - ERROR_SMOOTHING) * model.meanSquaredError + ERROR_SMOOTHING * error * error;
+    }
+
+    // Bias term, then the Tribuo model's features
+    private static double[] features(LocalDateTime time) {
+        double[] values = PredictionService.featureVector(time);
+        double[] x = new double[values.length + 1];
+        x[0] = 1.0;
+        System.arraycopy(values, 0, x, 1, values.length);
+        return x;
+    }
+}
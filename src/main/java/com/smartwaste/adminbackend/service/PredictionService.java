@@ -1,8 +1,10 @@
 package com.smartwaste.adminbackend.service;
 
 import com.smartwaste.adminbackend.model.Bin;
-import com.smartwaste.adminbackend.repository.BinRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 // Tribuo imports
@@ -27,33 +29,94 @@ import org.tribuo.math.StochasticGradientOptimiser;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class PredictionService {
 
-    @Autowired
-    private BinRepository binRepository;
+    @Autowired // Trained models by bin id: on disk, most recently used ones in memory
+    private ModelRegistry modelRegistry;
+
+    @Autowired // Resident bins, so batch predictions need no per-bin lookups
+    private FleetStateService fleetState;
+
+    @Autowired // Training runs as background jobs, never on the request thread
+    private TrainingJobService trainingJobs;
+
+    @Autowired // Per-bin models updated by every sensor reading; preferred once warm
+    private OnlineFillModelService onlineModels;
+
+    @Autowired // One shared model per waste type; serves bins without a model of their own
+    private GlobalFillModelService globalModels;
+
+    // per-bin: a bin's own trained model, the shared model only as fallback; global: shared model only
+    @Value("${ml.forecast-mode:per-bin}")
+    private String forecastMode;
+
+    // Worker threads for batch predictions (0 = one per CPU core)
+    @Value("${ml.prediction-parallelism:0}")
+    private int predictionParallelism;
+    private ForkJoinPool predictionPool;
 
     private static final RegressionFactory factory = new RegressionFactory();
-    private final Map<String, Model<Regressor>> trainedModels = new HashMap<>();
+
+    // Body of a batch prediction: either binIds or all=true, and the horizons in hours
+    public record BatchPredictionRequest(List<String> binIds, Boolean all, List<Integer> hours) {}
+
+    // Body of a training job: either binIds or all=true
+    public record TrainingRequest(List<String> binIds, Boolean all) {}
+
+    // Forecast matrix: fillLevels[i][j] is bin binIds[i] at hoursAhead[j]. Bins without a model are listed, not predicted.
+    public record BatchPrediction(LocalDateTime from, List<Integer> hoursAhead, List<String> binIds, double[][] fillLevels,
+                                  List<String> untrained, List<String> unknownBins, List<String> failed, long elapsedMs) {}
+
+    private record BinForecast(String binId, double[] fillLevels, boolean failed) {}
+
+    @PostConstruct
+    private void initPredictionPool() {
+        int parallelism = predictionParallelism > 0 ? predictionParallelism : Runtime.getRuntime().availableProcessors();
+        predictionPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    private void shutdownPredictionPool() {
+        predictionPool.shutdown();
+    }
 
     // ---------------------------------------------------------
     // TRAINING
     // ---------------------------------------------------------
-    public String trainBinFillModel(String binId) {
-        Optional<Bin> binOpt = binRepository.findById(binId);
-        if (binOpt.isEmpty()) {
-            return "Error: Bin not found for training.";
+
+    // Starts a background job training every listed bin (null = all bins); returns the job id
+    public String submitTraining(Collection<String> binIds) {
+        List<String> units = new ArrayList<>();
+        if (binIds == null) {
+            fleetState.getBins().forEach(bin -> units.add(bin.getId()));
+        } else {
+            units.addAll(new LinkedHashSet<>(binIds));
+        }
+        return trainingJobs.submit("bin-fill", units, this::trainBinFillModel);
+    }
+
+    // Trains and stores one bin's model; runs on a training worker, throws when the bin can't be trained
+    public void trainBinFillModel(String binId) {
+        if (fleetState.getBin(binId).isEmpty()) {
+            throw new RuntimeException("Bin not found for training.");
         }
-        System.out.println("Starting simulated training for bin: " + binId);
 
         List<Example<Regressor>> trainingData = generateDummyBinDataList(binId);
         if (trainingData.isEmpty()) {
-            return "Error: Not enough simulated data for bin " + binId;
+            throw new RuntimeException("Not enough simulated data for bin " + binId);
         }
 
+        Model<Regressor> model = trainRegressor(trainingData, "Simulated data for bin " + binId); // Timed per bin by the training job
+        modelRegistry.put(binId, model); // Replaces the previous model for this bin atomically
+    }
+
+    // The linear SGD setup every fill model uses (per bin, global, benchmark)
+    static Model<Regressor> trainRegressor(List<Example<Regressor>> trainingData, String description) {
         Map<String, Provenance> provenanceMap = new HashMap<>();
-        provenanceMap.put("SimulatedData", new SimpleDataSourceProvenance("Simulated data for bin " + binId, factory));
+        provenanceMap.put("TrainingData", new SimpleDataSourceProvenance(description, factory));
         DataSourceProvenance provenance = new SimpleDataSourceProvenance(provenanceMap);
 
         DataSource<Regressor> listDataSource = new ListDataSource<>(trainingData, factory, provenance);
@@ -71,30 +134,43 @@ public class PredictionService {
                 1L
         );
 
-        System.out.println("Training model...");
-        long start = System.currentTimeMillis();
-        Model<Regressor> model = trainer.train(trainingDataset);
-        long end = System.currentTimeMillis();
-        System.out.println("Training complete in " + (end - start) + " ms");
-
-        trainedModels.put(binId, model);
-        return "Successfully trained prediction model for bin " + binId;
+        return trainer.train(trainingDataset);
     }
 
     // ---------------------------------------------------------
     // PREDICTION
     // ---------------------------------------------------------
     public Optional<Double> predictBinFillLevel(String binId, int hoursAhead) {
-        Optional<Bin> binOpt = binRepository.findById(binId);
-        Model<Regressor> model = trainedModels.get(binId);
+        // Online model first: it has learned from the latest readings
+        Optional<Double> online = onlineModels.predict(binId, LocalDateTime.now().plusHours(hoursAhead));
+        if (online.isPresent()) {
+            return online;
+        }
+        Optional<Bin> binOpt = fleetState.getBin(binId);
+        Model<Regressor> model;
+        try { // An unreadable model file is this bin's failure, as in the batch path, not a server error
+            model = binOpt.isPresent() && usePerBinModels() ? modelRegistry.get(binId).orElse(null) : null;
+        } catch (RuntimeException e) {
+            System.err.println("Could not load the model for bin " + binId + ": " + e.getMessage());
+            return Optional.empty();
+        }
+        LocalDateTime futureTime = LocalDateTime.now().plusHours(hoursAhead);
 
+        if (binOpt.isPresent() && model == null) { // The shared model for the bin's waste type
+            try {
+                Optional<double[]> shared = globalModels.predict(binOpt.get(), List.of(futureTime));
+                if (shared.isPresent()) return Optional.of(shared.get()[0]);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return Optional.empty();
+            }
+        }
         if (binOpt.isEmpty() || model == null) {
             System.err.println("Missing bin or trained model for ID " + binId);
             return Optional.empty();
         }
 
         Bin bin = binOpt.get();
-        LocalDateTime futureTime = LocalDateTime.now().plusHours(hoursAhead);
         Example<Regressor> example = createPredictionExample(bin, futureTime);
 
         try {
@@ -109,11 +185,108 @@ public class PredictionService {
         }
     }
 
+    // Every listed bin (null = all bins) at every horizon. The features only depend on the target
+    // time, so the horizon examples are built once and each bin's model predicts them in one
+    // batched call (bins with a warm online model use that instead, bins without a model of their
+    // own the shared model for their waste type); bins are spread over the
+    // prediction pool.
+    public BatchPrediction predictBatch(Collection<String> requestedBinIds, List<Integer> hoursAhead) {
+        long start = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+        List<Example<Regressor>> examples = new ArrayList<>(hoursAhead.size());
+        for (int hours : hoursAhead) {
+            examples.add(createExampleFromFeatures(createFeatures(now.plusHours(hours)), 0.0)); // dummy output
+        }
+
+        List<String> known = new ArrayList<>();
+        List<String> unknownBins = new ArrayList<>();
+        if (requestedBinIds == null) {
+            fleetState.getBins().forEach(bin -> known.add(bin.getId()));
+        } else {
+            for (String binId : new LinkedHashSet<>(requestedBinIds)) {
+                (fleetState.getBin(binId).isPresent() ? known : unknownBins).add(binId);
+            }
+        }
+
+        List<LocalDateTime> times = hoursAhead.stream().map(now::plusHours).toList();
+        List<BinForecast> forecasts = predictionPool.submit(() -> known.parallelStream()
+                .map(binId -> forecast(binId, times, examples))
+                .toList()).join();
+
+        List<String> binIds = new ArrayList<>();
+        List<double[]> rows = new ArrayList<>();
+        List<String> untrained = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        for (BinForecast forecast : forecasts) {
+            if (forecast.failed()) {
+                failed.add(forecast.binId());
+            } else if (forecast.fillLevels() == null) {
+                untrained.add(forecast.binId());
+            } else {
+                binIds.add(forecast.binId());
+                rows.add(forecast.fillLevels());
+            }
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("Batch prediction: " + binIds.size() + " bins x " + hoursAhead.size() + " horizons in "
+                + elapsed + " ms (" + untrained.size() + " untrained).");
+        return new BatchPrediction(now, hoursAhead, binIds, rows.toArray(new double[0][]), untrained, unknownBins,
+                failed, elapsed);
+    }
+
     // ---------------------------------------------------------
     // HELPER METHODS
     // ---------------------------------------------------------
+    // From the bin's online model once it is warm, else from its trained model, else from the shared model
+    private BinForecast forecast(String binId, List<LocalDateTime> times, List<Example<Regressor>> examples) {
+        try {
+            double[] online = new double[times.size()];
+            int i = 0;
+            for (; i < online.length; i++) {
+                Optional<Double> value = onlineModels.predict(binId, times.get(i));
+                if (value.isEmpty()) break;
+                online[i] = value.get();
+            }
+            if (i == online.length) {
+                return new BinForecast(binId, online, false);
+            }
+
+            Optional<Model<Regressor>> model = usePerBinModels() ? modelRegistry.get(binId) : Optional.empty();
+            if (model.isEmpty()) {
+                Optional<Bin> bin = fleetState.getBin(binId);
+                Optional<double[]> shared = bin.isPresent() ? globalModels.predict(bin.get(), times) : Optional.empty();
+                return new BinForecast(binId, shared.orElse(null), false);
+            }
+            List<Prediction<Regressor>> predictions = model.get().predict(examples);
+            double[] fillLevels = new double[predictions.size()];
+            for (int j = 0; j < fillLevels.length; j++) {
+                fillLevels[j] = Math.max(0.0, Math.min(100.0, predictions.get(j).getOutput().getValues()[0]));
+            }
+            return new BinForecast(binId, fillLevels, false);
+        } catch (RuntimeException e) { // One unreadable model shouldn't fail the whole batch
+            System.err.println("Batch prediction failed for bin " + binId + ": " + e.getMessage());
+            return new BinForecast(binId, null, true);
+        }
+    }
+
+    private boolean usePerBinModels() {
+        return !"global".equalsIgnoreCase(forecastMode);
+    }
+
     private List<Example<Regressor>> generateDummyBinDataList(String binId) {
         List<Example<Regressor>> list = new ArrayList<>();
+        for (FillSample sample : simulatedHistory(binId)) {
+            list.add(createExampleFromFeatures(createFeatures(sample.time()), sample.fillLevel()));
+        }
+        return list;
+    }
+
+    // One simulated fill reading
+    record FillSample(LocalDateTime time, double fillLevel) {}
+
+    // A week of simulated readings, every 6 hours back from now; the same every time for a bin
+    static List<FillSample> simulatedHistory(String binId) {
+        List<FillSample> list = new ArrayList<>();
         Random random = new Random(binId.hashCode());
         LocalDateTime now = LocalDateTime.now();
         double fill = random.nextDouble() * 20;
@@ -135,8 +308,7 @@ public class PredictionService {
 
             fill = Math.max(0.0, Math.min(100.0, fill));
 
-            Example<Regressor> ex = createExampleFromFeatures(createFeatures(timestamp), fill);
-            list.add(ex);
+            list.add(new FillSample(timestamp, fill));
         }
 
         return list;
@@ -152,14 +324,21 @@ public class PredictionService {
      * Converts a Map<String,Double> into an ArrayExample
      * using the constructor that takes parallel arrays.
      */
-    private Example<Regressor> createExampleFromFeatures(Map<String, Double> features, double fillLevel) {
+    static Example<Regressor> createExampleFromFeatures(Map<String, Double> features, double fillLevel) {
         String[] featureNames = features.keySet().toArray(new String[0]);
         double[] featureValues = features.values().stream().mapToDouble(Double::doubleValue).toArray();
         Regressor output = new Regressor("FillLevel", fillLevel);
         return new ArrayExample<>(output, featureNames, featureValues);
     }
 
-    private Map<String, Double> createFeatures(LocalDateTime timestamp) {
+    // createFeatures as a plain vector, for models outside Tribuo (OnlineFillModelService)
+    static final int FEATURE_COUNT = 3;
+
+    static double[] featureVector(LocalDateTime timestamp) {
+        return createFeatures(timestamp).values().stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    static Map<String, Double> createFeatures(LocalDateTime timestamp) {
         Map<String, Double> map = new LinkedHashMap<>();
         map.put("hourOfDay", (double) timestamp.getHour());
         map.put("dayOfWeek", (double) timestamp.getDayOfWeek().getValue());
@@ -0,0 +1,76 @@
+package com.smartwaste.adminbackend.service;
+
+// Linear regression updated one observation at a time (recursive least squares), so a model can
+// absorb each new reading in O(features^2) without keeping or revisiting past data.
+//
+// The forgetting factor (just under 1) down-weights old observations, so the fit follows slow
+// changes in behaviour. While the inputs carry no new information (same features over and over),
+// forgetting would blow P up ("windup"); once P's trace passes a cap, forgetting is paused.
+// Not thread-safe: callers hold one lock per model.
+public class RecursiveLeastSquares {
+
+    private static final double MAX_TRACE = 1e8;
+
+    private final double forgetting;
+    private final double[] weights;
+    private final double[][] p; // Inverse of the (weighted) input covariance
+    private long updates;
+
+    public RecursiveLeastSquares(int features, double forgetting, double initialVariance) {
+        if (features <= 0 || forgetting <= 0 || forgetting > 1 || initialVariance <= 0) {
+            throw new IllegalArgumentException("Invalid RLS settings: features=" + features + ", forgetting=" + forgetting
+                    + ", initialVariance=" + initialVariance);
+        }
+        this.forgetting = forgetting;
+        this.weights = new double[features];
+        this.p = new double[features][features];
+        for (int i = 0; i < features; i++) p[i][i] = initialVariance;
+    }
+
+    public double predict(double[] x) {
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) sum += weights[i] * x[i];
+        return sum;
+    }
+
+    // Learns from one observation; returns the error of the prediction made before learning from it
+    public double update(double[] x, double y) {
+        int n = weights.length;
+        double[] px = new double[n];
+        double xpx = 0;
+        for (int i = 0; i < n; i++) {
+            double sum = 0;
+            for (int j = 0; j < n; j++) sum += p[i][j] * x[j];
+            px[i] = sum;
+            xpx += x[i] * sum;
+        }
+        double lambda = trace() > MAX_TRACE ? 1.0 : forgetting;
+        double denominator = lambda + xpx;
+        double error = y - predict(x);
+        for (int i = 0; i < n; i++) {
+            weights[i] += px[i] / denominator * error;
+        }
+        // P = (P - Px (Px)^T / denominator) / lambda, which keeps P symmetric
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                p[i][j] = (p[i][j] - px[i] * px[j] / denominator) / lambda;
+            }
+        }
+        updates++;
+        return error;
+    }
+
+    public long getUpdates() {
+        return updates;
+    }
+
+    public double[] getWeights() {
+        return weights.clone();
+    }
+
+    private double trace() {
+        double trace = 0;
+        for (int i = 0; i < p.length; i++) trace += p[i][i];
+        return trace;
+    }
+}
@@ -0,0 +1,121 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.model.WaypointRoute;
+import com.smartwaste.adminbackend.routing.ContractionHierarchy;
+import com.smartwaste.adminbackend.routing.DistanceMatrix;
+import com.smartwaste.adminbackend.routing.Node;
+import com.smartwaste.adminbackend.routing.RoadNetwork;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Road distances and route geometry from the street graph, when one is configured.
+// Without a road network file everything falls back to straight-line (Haversine) distances.
+@Service
+public class RoadNetworkService {
+
+    @Value("${routing.road-network.file:}")
+    private String networkFile;
+
+    @Value("${routing.road-network.cache-file:}")
+    private String cacheFile;
+
+    private volatile ContractionHierarchy hierarchy; // null = no road graph, use Haversine
+
+    @PostConstruct
+    private void loadRoadNetwork() {
+        if (!StringUtils.hasText(networkFile)) {
+            System.out.println("No road network configured. Routing will use straight-line distances.");
+            return;
+        }
+        Path network = Paths.get(networkFile);
+        Path cache = StringUtils.hasText(cacheFile) ? Paths.get(cacheFile) : Paths.get(networkFile + ".ch");
+        try {
+            long start = System.currentTimeMillis();
+            if (Files.exists(cache) && Files.getLastModifiedTime(cache).compareTo(Files.getLastModifiedTime(network)) >= 0) {
+                hierarchy = ContractionHierarchy.load(cache);
+                System.out.println("Loaded road network hierarchy from " + cache + " (" + hierarchy.nodeCount() + " nodes) in "
+                        + (System.currentTimeMillis() - start) + " ms.");
+                return;
+            }
+            RoadNetwork roads = RoadNetwork.loadEdgeList(network);
+            ContractionHierarchy.build(roads).save(cache);
+            hierarchy = ContractionHierarchy.load(cache); // Query from the memory-mapped file
+            System.out.println("Preprocessed road network " + network + " (" + roads.nodeCount() + " nodes) in "
+                    + (System.currentTimeMillis() - start) + " ms, cached at " + cache + ".");
+        } catch (Exception e) {
+            System.err.println("Could not load road network " + network + ": " + e.getMessage() + ". Falling back to straight-line distances.");
+            hierarchy = null;
+        }
+    }
+
+    public boolean isLoaded() {
+        return hierarchy != null;
+    }
+
+    // Road distances (km) between every pair of locations. Each location is snapped to its
+    // closest road node; the walk to/from that node is added as straight-line distance.
+    public DistanceMatrix distanceMatrix(List<Bin.Location> locations) {
+        ContractionHierarchy ch = hierarchy;
+        if (ch == null) {
+            return DistanceMatrix.haversine(locations);
+        }
+        int n = locations.size();
+        int[] snapped = new int[n];
+        double[] access = new double[n];
+        for (int i = 0; i < n; i++) {
+            snapped[i] = ch.nearestNode(locations.get(i).getLatitude(), locations.get(i).getLongitude());
+            access[i] = Node.calculateDistance(locations.get(i), roadNodeLocation(ch, snapped[i]));
+        }
+
+        double[] distances = ch.distanceTable(snapped, snapped);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                int cell = i * n + j;
+                if (i == j) {
+                    distances[cell] = 0.0;
+                } else if (Double.isInfinite(distances[cell])) {
+                    // Not connected in the road graph (e.g. one-way dead end): use the straight line
+                    distances[cell] = Node.calculateDistance(locations.get(i), locations.get(j));
+                } else {
+                    distances[cell] += access[i] + access[j];
+                }
+            }
+        }
+        return new DistanceMatrix(n, distances);
+    }
+
+    // Route through the stops, with the road geometry between consecutive stops filled in.
+    // Stops are always kept exactly and carry their bin id (null = not a bin) and planned load.
+    public WaypointRoute expandRoute(List<Bin.Location> stops, List<String> binIds, double[] plannedLoads) {
+        ContractionHierarchy ch = hierarchy;
+        WaypointRoute.Builder route = new WaypointRoute.Builder();
+        for (int k = 0; k < stops.size(); k++) {
+            Bin.Location stop = stops.get(k);
+            route.add(stop.getLatitude(), stop.getLongitude(), binIds.get(k), plannedLoads[k]);
+            if (ch == null || k + 1 == stops.size()) continue;
+
+            Bin.Location next = stops.get(k + 1);
+            int from = ch.nearestNode(stop.getLatitude(), stop.getLongitude());
+            int to = ch.nearestNode(next.getLatitude(), next.getLongitude());
+            for (int roadNode : ch.path(from, to)) {
+                route.add(ch.latitude(roadNode), ch.longitude(roadNode), null, 0.0); // Builder merges a stop sitting on a road node
+            }
+        }
+        return route.build();
+    }
+
+    private Bin.Location roadNodeLocation(ContractionHierarchy ch, int node) {
+        Bin.Location location = new Bin.Location();
+        location.setLatitude(ch.latitude(node));
+        location.setLongitude(ch.longitude(node));
+        return location;
+    }
+}
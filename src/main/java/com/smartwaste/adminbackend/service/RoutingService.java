@@ -2,29 +2,47 @@ package com.smartwaste.adminbackend.service;
 
 import com.smartwaste.adminbackend.model.Bin;
 import com.smartwaste.adminbackend.model.Truck;
-import com.smartwaste.adminbackend.repository.BinRepository;
-import com.smartwaste.adminbackend.repository.TruckRepository;
-import com.smartwaste.adminbackend.routing.Dijkstra;
-import com.smartwaste.adminbackend.routing.Graph;
+import com.smartwaste.adminbackend.model.WaypointRoute;
+import com.smartwaste.adminbackend.routing.DistanceMatrix;
 import com.smartwaste.adminbackend.routing.Node;
+import com.smartwaste.adminbackend.routing.TourOptimizer;
+import com.smartwaste.adminbackend.routing.FleetPlanner;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 @Service
 public class RoutingService {
 
     @Autowired
-    private BinRepository binRepository;
+    private FleetStateService fleetState; // Live truck positions, ahead of Mongo between flushes
 
     @Autowired
-    private TruckRepository truckRepository;
+    private RoadNetworkService roadNetworkService; // Road distances, or Haversine when no road graph is loaded
+
+    // How long 2-opt / Or-opt may keep improving a route before we return the best found so far
+    @Value("${routing.optimization.time-budget-ms:200}")
+    private long optimizationTimeBudgetMs;
+
+    // Fleet planning: total solve time budget and worker threads (0 = one per CPU core)
+    @Value("${routing.fleet.time-budget-ms:2000}")
+    private long fleetTimeBudgetMs;
+    @Value("${routing.fleet.parallelism:0}")
+    private int fleetParallelism;
+
+    private ForkJoinPool plannerPool;
+
+    // Result of a fleet-wide plan: one route per truck plus bins no truck had room for
+    public record TruckRoute(String truckId, String licensePlate, List<Node> stops, double load, double remainingCapacity, double distanceKm) {}
+    public record FleetPlan(List<TruckRoute> routes, List<String> unassignedBinIds) {}
+
+    private static final double FULL_BIN_THRESHOLD = 85.0; // Fill % above which a bin needs collecting
 
     // Depot: Colombo Municipal Council
     private final Bin.Location DEPOT_LOCATION = new Bin.Location() {{
@@ -34,7 +52,7 @@ public class RoutingService {
 
     public List<Node> generateOptimalRoute(String truckId) {
         // 1. Get truck & validate location
-        Truck truck = truckRepository.findById(truckId)
+        Truck truck = fleetState.getTruck(truckId)
                 .orElseThrow(() -> new RuntimeException("Truck not found"));
         if (truck.getCurrentLocation() == null || truck.getCurrentLocation().getLatitude() == 0 || truck.getCurrentLocation().getLongitude() == 0) {
             throw new RuntimeException("Selected truck has an invalid starting location.");
@@ -42,76 +60,166 @@ public class RoutingService {
         Node truckNode = new Node(truck.getId(), truck.getCurrentLocation());
 
         // 2. Get bins > 85% full with valid locations
-        List<Bin> fullBins = binRepository.findAll().stream()
-                .filter(bin -> bin.getFillLevel() != null && bin.getFillLevel() > 85 &&
-                        bin.getLocation() != null && bin.getLocation().getLatitude() != 0 && bin.getLocation().getLongitude() != 0)
-                .toList();
+        List<Bin> fullBins = findRoutableBins();
 
         if (fullBins.isEmpty()) {
             throw new RuntimeException("No valid full bins found to generate a route.");
         }
 
-        // 3. Create nodes
-        Node depotNode = new Node("DEPOT", DEPOT_LOCATION);
-        Set<Node> binNodes = new HashSet<>();
+        // 3. Index locations for the distance matrix: 0 = truck, 1..n = bins, n + 1 = depot
+        int binCount = fullBins.size();
+        List<Bin.Location> locations = new ArrayList<>(binCount + 2);
+        locations.add(truck.getCurrentLocation());
         for (Bin bin : fullBins) {
-            // Ensure bin location isn't null before creating node
-            if(bin.getLocation() != null){
-                binNodes.add(new Node(bin.getId(), bin.getLocation()));
-            }
+            locations.add(bin.getLocation());
+        }
+        locations.add(DEPOT_LOCATION);
+        int depotIndex = binCount + 1;
+
+        // 4. Distances computed once, then nearest-neighbour tour improved by 2-opt / Or-opt
+        DistanceMatrix matrix = roadNetworkService.distanceMatrix(locations);
+        int[] stops = new int[binCount];
+        for (int i = 0; i < binCount; i++) {
+            stops[i] = i + 1;
+        }
+        int[] path = TourOptimizer.nearestNeighbourPath(matrix, 0, stops, depotIndex);
+        double initialLength = TourOptimizer.pathLength(matrix, path);
+        new TourOptimizer(matrix, optimizationTimeBudgetMs).improve(path);
+        System.out.println(String.format("Route for truck %s: %d bins, %.2f km (nearest-neighbour %.2f km)",
+                truckId, binCount, TourOptimizer.pathLength(matrix, path), initialLength));
+
+        // 5. Map matrix indices back to route nodes (truck, bins..., depot)
+        List<Node> optimalRoute = new ArrayList<>(path.length);
+        optimalRoute.add(truckNode);
+        for (int i = 1; i < path.length - 1; i++) {
+            Bin bin = fullBins.get(path[i] - 1);
+            optimalRoute.add(new Node(bin.getId(), bin.getLocation()));
+        }
+
+        // 6. Add depot
+        optimalRoute.add(new Node("DEPOT", DEPOT_LOCATION));
+        return optimalRoute;
+    }
+
+    // =====================================================
+    // FLEET PLANNING: split all full bins across all IDLE trucks in one solve
+    // =====================================================
+    public FleetPlan planFleet() {
+        List<Truck> trucks = fleetState.getTrucks().stream()
+                .filter(truck -> truck.getStatus() == Truck.TruckStatus.IDLE)
+                .filter(this::hasUsableCapacity)
+                .toList();
+        if (trucks.isEmpty()) {
+            throw new RuntimeException("No IDLE trucks with a known capacity and location are available.");
+        }
+        List<Bin> fullBins = findRoutableBins();
+        if (fullBins.isEmpty()) {
+            throw new RuntimeException("No valid full bins found to generate a route.");
+        }
+
+        // Matrix layout: 0 = depot, 1..n = bins, n + 1.. = truck start positions
+        List<Bin.Location> locations = new ArrayList<>(1 + fullBins.size() + trucks.size());
+        locations.add(DEPOT_LOCATION);
+        double[] demands = new double[fullBins.size()];
+        for (int b = 0; b < fullBins.size(); b++) {
+            Bin bin = fullBins.get(b);
+            locations.add(bin.getLocation());
+            demands[b] = binLoad(bin);
+        }
+        double[] capacities = new double[trucks.size()];
+        for (int r = 0; r < trucks.size(); r++) {
+            Truck truck = trucks.get(r);
+            locations.add(truck.getCurrentLocation());
+            capacities[r] = remainingCapacity(truck);
         }
 
-        // --- Greedy Dijkstra Approach ---
-        List<Node> optimalRoute = new ArrayList<>();
-        Node currentNode = truckNode;
-        optimalRoute.add(currentNode);
-
-        while (!binNodes.isEmpty()) {
-            Graph graph = new Graph();
-            currentNode.setAdjacentNodes(new HashMap<>()); // Reset connections
-            currentNode.setDistance(0.0); // Reset distance for source node
-            graph.addNode(currentNode);
-
-            for (Node binNode : binNodes) {
-                // Ensure locations are valid before calculating distance
-                if (currentNode.getLocation() != null && binNode.getLocation() != null) {
-                    double dist = Node.calculateDistance(currentNode.getLocation(), binNode.getLocation());
-                    if (dist != Double.MAX_VALUE) { // Only add reachable nodes
-                        currentNode.addDestination(binNode, dist);
-                    }
-                }
-                // Reset bin node for Dijkstra
-                binNode.setDistance(Double.MAX_VALUE);
-                binNode.setShortestPath(new LinkedList<>());
-                graph.addNode(binNode);
+        DistanceMatrix matrix = roadNetworkService.distanceMatrix(locations);
+        long start = System.currentTimeMillis();
+        FleetPlanner.Result result = new FleetPlanner(matrix, demands, capacities, plannerPool, fleetTimeBudgetMs).solve();
+        System.out.println("Fleet plan for " + trucks.size() + " trucks and " + fullBins.size() + " bins computed in "
+                + (System.currentTimeMillis() - start) + " ms (" + result.unassignedBins.length + " bins unassigned).");
+
+        List<TruckRoute> routes = new ArrayList<>();
+        for (int r = 0; r < trucks.size(); r++) {
+            int[] path = result.routes[r];
+            if (path == null) continue; // Truck not needed
+
+            Truck truck = trucks.get(r);
+            List<Node> stops = new ArrayList<>(path.length);
+            stops.add(new Node(truck.getId(), truck.getCurrentLocation()));
+            for (int i = 1; i < path.length - 1; i++) {
+                Bin bin = fullBins.get(path[i] - 1);
+                stops.add(new Node(bin.getId(), bin.getLocation()));
             }
+            stops.add(new Node("DEPOT", DEPOT_LOCATION));
+            routes.add(new TruckRoute(truck.getId(), truck.getLicensePlate(), stops, result.loads[r],
+                    capacities[r] - result.loads[r], TourOptimizer.pathLength(matrix, path)));
+        }
+        List<String> unassignedBinIds = new ArrayList<>();
+        for (int b : result.unassignedBins) {
+            unassignedBinIds.add(fullBins.get(b).getId());
+        }
+        return new FleetPlan(routes, unassignedBinIds);
+    }
 
-            // Run Dijkstra
-            graph = Dijkstra.calculateShortestPathFromSource(graph, currentNode);
-
-            // Find closest reachable bin
-            Node closestBin = null;
-            double minDistance = Double.MAX_VALUE;
-            for (Node node : graph.getNodes()) {
-                if (node.equals(currentNode)) continue;
-                if (!node.getDistance().equals(Double.MAX_VALUE) && node.getDistance() < minDistance) {
-                    minDistance = node.getDistance();
-                    closestBin = node;
-                }
+    // Route nodes (truck, bins..., depot) as the waypoint route the simulation follows: road geometry
+    // between stops when a road network is loaded, and each bin stop tagged with its id and load
+    public WaypointRoute toWaypointRoute(List<Node> routeNodes) {
+        int last = routeNodes.size() - 1;
+        List<Bin.Location> stops = new ArrayList<>(routeNodes.size());
+        List<String> binIds = new ArrayList<>(routeNodes.size());
+        double[] plannedLoads = new double[routeNodes.size()];
+        for (int i = 0; i <= last; i++) {
+            Node node = routeNodes.get(i);
+            stops.add(node.getLocation());
+            boolean isBinStop = i > 0 && i < last; // First node is the truck, last the depot
+            binIds.add(isBinStop ? node.getId() : null);
+            if (isBinStop) {
+                plannedLoads[i] = fleetState.getBin(node.getId()).map(this::binLoad).orElse(0.0);
             }
+        }
+        return roadNetworkService.expandRoute(stops, binIds, plannedLoads);
+    }
 
-            if (closestBin == null) break; // No more reachable bins
+    @PostConstruct
+    private void initPlannerPool() {
+        int parallelism = fleetParallelism > 0 ? fleetParallelism : Runtime.getRuntime().availableProcessors();
+        plannerPool = new ForkJoinPool(parallelism);
+    }
 
-            optimalRoute.add(closestBin);
-            // Re-create currentNode cleanly for the next iteration
-            currentNode = new Node(closestBin.getId(), closestBin.getLocation());
-            // Use effectively final variable for lambda
-            final Node binToRemove = closestBin;
-            binNodes.removeIf(node -> node.getId().equals(binToRemove.getId()));
-        }
+    @PreDestroy
+    private void shutdownPlannerPool() {
+        plannerPool.shutdown();
+    }
 
-        // 6. Add depot
-        optimalRoute.add(depotNode);
-        return optimalRoute;
+    // --- Helpers ---
+    // From the resident bins: they are ahead of Mongo for bins just emptied by the simulation or
+    // filled by sensor readings that haven't been flushed yet
+    private List<Bin> findRoutableBins() {
+        return fleetState.getBins().stream()
+                .filter(bin -> bin.getFillLevel() != null && bin.getFillLevel() > FULL_BIN_THRESHOLD &&
+                        bin.getLocation() != null && bin.getLocation().getLatitude() != 0 && bin.getLocation().getLongitude() != 0)
+                .toList();
+    }
+
+    // Waste currently in a bin, in the same unit as capacity (e.g. 100 L bin at 90% = 90 L)
+    private double binLoad(Bin bin) {
+        if (bin.getFillLevel() == null) return 0.0;
+        double capacity = bin.getCapacity() != null ? bin.getCapacity() : 0.0;
+        return capacity * bin.getFillLevel() / 100.0;
+    }
+
+    // Truck capacity is assumed to use the same unit as bin capacity
+    private double remainingCapacity(Truck truck) {
+        double fill = truck.getCurrentFillLevel() != null ? truck.getCurrentFillLevel() : 0.0;
+        return truck.getCapacity() * Math.max(0.0, 100.0 - fill) / 100.0;
+    }
+
+    private boolean hasUsableCapacity(Truck truck) {
+        boolean usable = truck.getCapacity() != null && truck.getCapacity() > 0 && truck.getCurrentLocation() != null;
+        if (!usable) {
+            System.err.println("Skipping truck " + truck.getId() + " in fleet plan: missing capacity or location.");
+        }
+        return usable;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,146 @@
+package com.smartwaste.adminbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Runs simulation ticks one at a time on a single thread, either on its own at a fixed rate
+// or when someone POSTs /simulation/tick.
+//
+// Tick requests are coalesced: every request that arrives before the next tick starts is
+// answered by that same tick, so any number of open dashboards still means one tick at a
+// time. With the fixed-rate scheduler on, requests simply wait for the next scheduled tick.
+// A scheduled tick that overruns its slot makes the scheduler skip the slots it missed
+// rather than fire them back to back.
+@Service
+public class SimulationScheduler {
+
+    @Autowired
+    private TruckService truckService;
+
+    // Fixed-rate ticks driven by the server. Off by default: the dashboard drives ticks (and pausing)
+    @Value("${simulation.scheduler.enabled:false}")
+    private boolean schedulerEnabled;
+    @Value("${simulation.scheduler.tick-interval-ms:1000}")
+    private long tickIntervalMs;
+
+    public record TickStats(boolean schedulerEnabled, long tickIntervalMs, long ticks, long coalescedRequests,
+                            long overruns, long skippedTicks, double lastTickMs, double maxTickMs,
+                            double lastLagMs, double maxLagMs) {}
+
+    private ScheduledExecutorService tickThread;
+    private long nextTickNanos; // Only touched on the tick thread
+
+    // Guarded by this
+    private CompletableFuture<Void> nextTick; // Shared by every request waiting for the next tick
+    private long ticks, coalescedRequests, overruns, skippedTicks;
+    private long lastTickNanos, maxTickNanos, lastLagNanos, maxLagNanos;
+
+    @PostConstruct
+    private void start() {
+        tickThread = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (schedulerEnabled) {
+            nextTickNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(tickIntervalMs);
+            tickThread.schedule(this::runScheduledTick, tickIntervalMs, TimeUnit.MILLISECONDS);
+            System.out.println("Simulation scheduler ticking every " + tickIntervalMs + " ms.");
+        }
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        tickThread.shutdown();
+        tickThread.awaitTermination(10, TimeUnit.SECONDS);
+        CompletableFuture<Void> waiting = takeWaitingRequests();
+        if (waiting != null) waiting.completeExceptionally(new IllegalStateException("Simulation is shutting down"));
+    }
+
+    // Completes once a tick that started after this call has finished
+    public CompletableFuture<Void> requestTick() {
+        synchronized (this) {
+            if (tickThread.isShutdown()) {
+                throw new IllegalStateException("Simulation is shutting down");
+            }
+            if (nextTick != null) {
+                coalescedRequests++;
+                return nextTick;
+            }
+            nextTick = new CompletableFuture<>();
+            if (!schedulerEnabled) {
+                tickThread.execute(this::runRequestedTick);
+            }
+            return nextTick;
+        }
+    }
+
+    public synchronized TickStats getStats() {
+        return new TickStats(schedulerEnabled, tickIntervalMs, ticks, coalescedRequests, overruns, skippedTicks,
+                lastTickNanos / 1e6, maxTickNanos / 1e6, lastLagNanos / 1e6, maxLagNanos / 1e6);
+    }
+
+    private void runRequestedTick() {
+        runTick(takeWaitingRequests());
+    }
+
+    private void runScheduledTick() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(tickIntervalMs);
+        long lag = System.nanoTime() - nextTickNanos;
+        synchronized (this) {
+            lastLagNanos = lag;
+            maxLagNanos = Math.max(maxLagNanos, lag);
+        }
+
+        long duration = runTick(takeWaitingRequests());
+
+        long now = System.nanoTime();
+        nextTickNanos += intervalNanos;
+        long missed = 0;
+        while (nextTickNanos < now) { // Overran: drop the slots we missed instead of catching up
+            nextTickNanos += intervalNanos;
+            missed++;
+        }
+        synchronized (this) {
+            if (duration > intervalNanos) overruns++;
+            skippedTicks += missed;
+        }
+        if (!tickThread.isShutdown()) {
+            tickThread.schedule(this::runScheduledTick, nextTickNanos - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private synchronized CompletableFuture<Void> takeWaitingRequests() {
+        CompletableFuture<Void> waiting = nextTick;
+        nextTick = null;
+        return waiting;
+    }
+
+    // Runs one tick and answers the requests waiting for it. Returns the tick duration in ns.
+    private long runTick(CompletableFuture<Void> waiting) {
+        long start = System.nanoTime();
+        try {
+            truckService.simulateTruckMovement();
+        } catch (RuntimeException e) { // Keep the ticker alive; callers waiting on this tick get the error
+            System.err.println("Simulation tick failed: " + e.getMessage());
+            if (waiting != null) waiting.completeExceptionally(e);
+            return System.nanoTime() - start;
+        }
+        long duration = System.nanoTime() - start;
+        synchronized (this) {
+            ticks++;
+            lastTickNanos = duration;
+            maxTickNanos = Math.max(maxTickNanos, duration);
+        }
+        if (waiting != null) waiting.complete(null);
+        return duration;
+    }
+}
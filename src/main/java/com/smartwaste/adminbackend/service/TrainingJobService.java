@@ -0,0 +1,240 @@
+package com.smartwaste.adminbackend.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+// Background training jobs, so training never runs on a web request thread.
+//
+// A job is a list of units (bin ids, a dataset id) and the work to do for each. Submitting returns
+// the job id at once; the units are then worked off by a fixed pool with one thread per core,
+// shared by all jobs. A job never queues more than pool-size tasks: each task keeps taking the
+// job's next unit until none are left. Progress, per-unit timings and failures are kept on the
+// job for the status endpoint, and the last retainedJobs finished jobs are remembered.
+@Service
+public class TrainingJobService {
+
+    // Worker threads (0 = one per CPU core) and how many finished jobs stay queryable
+    @Value("${ml.training.parallelism:0}")
+    private int trainingParallelism;
+    @Value("${ml.training.retained-jobs:50}")
+    private int retainedJobs;
+
+    public enum JobStatus { QUEUED, RUNNING, COMPLETED, COMPLETED_WITH_ERRORS, CANCELLED }
+
+    public record UnitResult(String unit, long elapsedMs, String error) {}
+
+    public record JobSummary(String id, String kind, JobStatus status, int total, int done, int failed,
+                             LocalDateTime submittedAt, LocalDateTime startedAt, LocalDateTime finishedAt,
+                             long elapsedMs, double avgUnitMs, long maxUnitMs) {}
+
+    public record JobDetail(JobSummary summary, List<UnitResult> results) {}
+
+    private ExecutorService workers;
+    private int poolSize;
+    private final Map<String, Job> jobs = new LinkedHashMap<>(); // Guarded by itself; oldest first
+
+    @PostConstruct
+    private void start() {
+        poolSize = trainingParallelism > 0 ? trainingParallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "training-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void stop() throws InterruptedException {
+        synchronized (jobs) {
+            jobs.values().forEach(job -> job.cancelled = true); // Units in progress finish, the rest are dropped
+        }
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    // Queues the work for every unit; returns the job id right away
+    public String submit(String kind, List<String> units, Consumer<String> work) {
+        return submit(kind, units, work, unit -> {});
+    }
+
+    // As above; `skipped` is called, once the job is over, for each unit a cancel kept from running
+    public String submit(String kind, List<String> units, Consumer<String> work, Consumer<String> skipped) {
+        Job job = new Job(UUID.randomUUID().toString(), kind, units, work, skipped);
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            trimFinishedJobs();
+        }
+        int tasks = Math.max(1, Math.min(poolSize, units.size()));
+        for (int i = 0; i < tasks; i++) {
+            workers.execute(() -> runUnits(job));
+        }
+        System.out.println("Training job " + job.id + " (" + kind + ") queued with " + units.size() + " units.");
+        return job.id;
+    }
+
+    // Housekeeping work (e.g. online model refits) on the same workers, without a job to list or query
+    public void execute(String kind, Runnable task) {
+        workers.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.err.println("Background " + kind + " failed: " + e.getMessage());
+            }
+        });
+    }
+
+    public Optional<JobDetail> getJob(String jobId) {
+        Job job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        return Optional.ofNullable(job).map(j -> new JobDetail(j.summary(), new ArrayList<>(j.results)));
+    }
+
+    // Newest first, without per-unit results
+    public List<JobSummary> listJobs() {
+        List<JobSummary> summaries = new ArrayList<>();
+        synchronized (jobs) {
+            jobs.values().forEach(job -> summaries.add(0, job.summary()));
+        }
+        return summaries;
+    }
+
+    // Units not started yet are skipped; ones already running finish
+    public boolean cancel(String jobId) {
+        synchronized (jobs) {
+            Job job = jobs.get(jobId);
+            if (job == null) return false;
+            job.cancelled = true;
+            return true;
+        }
+    }
+
+    // =====================================================
+    // WORKERS
+    // =====================================================
+    private void runUnits(Job job) {
+        job.markStarted();
+        String unit;
+        while (!job.cancelled && (unit = job.pending.poll()) != null) {
+            long start = System.currentTimeMillis();
+            String error = null;
+            try {
+                job.work.accept(unit);
+            } catch (RuntimeException e) { // Record it and go on with the next unit
+                error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                System.err.println("Training job " + job.id + " failed on " + unit + ": " + error);
+            }
+            job.record(new UnitResult(unit, System.currentTimeMillis() - start, error));
+        }
+        job.taskFinished();
+    }
+
+    private void trimFinishedJobs() {
+        int finished = 0;
+        for (Job job : jobs.values()) {
+            if (job.isFinished()) finished++;
+        }
+        Iterator<Job> oldestFirst = jobs.values().iterator();
+        while (finished > retainedJobs && oldestFirst.hasNext()) {
+            if (oldestFirst.next().isFinished()) {
+                oldestFirst.remove();
+                finished--;
+            }
+        }
+    }
+
+    private final class Job {
+        final String id;
+        final String kind;
+        final int total;
+        final Consumer<String> work;
+        final Consumer<String> skipped;
+        final ConcurrentLinkedQueue<String> pending;
+        final ConcurrentLinkedQueue<UnitResult> results = new ConcurrentLinkedQueue<>();
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        final AtomicInteger runningTasks;
+        volatile boolean cancelled;
+
+        // Guarded by this
+        LocalDateTime startedAt, finishedAt;
+        int done, failed;
+        long totalUnitMs, maxUnitMs;
+
+        Job(String id, String kind, List<String> units, Consumer<String> work, Consumer<String> skipped) {
+            this.id = id;
+            this.kind = kind;
+            this.total = units.size();
+            this.work = work;
+            this.skipped = skipped;
+            this.pending = new ConcurrentLinkedQueue<>(units);
+            this.runningTasks = new AtomicInteger(Math.max(1, Math.min(poolSize, units.size())));
+        }
+
+        synchronized void markStarted() {
+            if (startedAt == null) startedAt = LocalDateTime.now();
+        }
+
+        synchronized void record(UnitResult result) {
+            results.add(result);
+            done++;
+            if (result.error() != null) failed++;
+            totalUnitMs += result.elapsedMs();
+            maxUnitMs = Math.max(maxUnitMs, result.elapsedMs());
+        }
+
+        void taskFinished() {
+            if (runningTasks.decrementAndGet() == 0) {
+                synchronized (this) {
+                    finishedAt = LocalDateTime.now();
+                }
+                JobSummary summary = summary();
+                System.out.println("Training job " + id + " " + summary.status() + ": " + done + "/" + total + " units, "
+                        + failed + " failed, " + summary.elapsedMs() + " ms.");
+                String unit;
+                while ((unit = pending.poll()) != null) { // Only left over when cancelled
+                    try {
+                        skipped.accept(unit);
+                    } catch (RuntimeException e) {
+                        System.err.println("Training job " + id + " could not mark " + unit + " as skipped: " + e.getMessage());
+                    }
+                }
+            }
+        }
+
+        synchronized boolean isFinished() {
+            return finishedAt != null;
+        }
+
+        synchronized JobSummary summary() {
+            JobStatus status;
+            if (startedAt == null) status = JobStatus.QUEUED;
+            else if (finishedAt == null) status = JobStatus.RUNNING;
+            else if (cancelled && done < total) status = JobStatus.CANCELLED;
+            else status = failed > 0 ? JobStatus.COMPLETED_WITH_ERRORS : JobStatus.COMPLETED;
+            long elapsed = startedAt == null ? 0
+                    : Duration.between(startedAt, finishedAt != null ? finishedAt : LocalDateTime.now()).toMillis();
+            return new JobSummary(id, kind, status, total, done, failed, submittedAt, startedAt, finishedAt, elapsed,
+                    done > 0 ? (double) totalUnitMs / done : 0.0, maxUnitMs);
+        }
+    }
+}
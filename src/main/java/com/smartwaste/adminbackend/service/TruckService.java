@@ -3,32 +3,63 @@ package com.smartwaste.adminbackend.service;
 import com.smartwaste.adminbackend.model.Alert;
 import com.smartwaste.adminbackend.model.Bin;
 import com.smartwaste.adminbackend.model.Truck;
-import com.smartwaste.adminbackend.repository.BinRepository; // Need BinRepository
+import com.smartwaste.adminbackend.model.WaypointRoute;
+import com.smartwaste.adminbackend.repository.KeysetPager;
 import com.smartwaste.adminbackend.repository.TruckRepository;
 import com.smartwaste.adminbackend.routing.Node; // Need Node for distance calculation
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional; // Import Transactional
 
+import java.time.Instant;
 import java.util.ArrayList; // Import ArrayList
-import java.util.Collections;
-import java.util.Comparator; // Import Comparator
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
 
 @Service
 public class TruckService {
 
     @Autowired
     private TruckRepository truckRepository;
-    @Autowired // Inject BinRepository
-    private BinRepository binRepository;
     @Autowired // Inject AlertService
     private AlertService alertService;
+    @Autowired // Bin/truck positions, so waypoint and idle-truck lookups don't scan collections
+    private LocationIndexService locationIndex;
+    @Autowired // Resident trucks/bins the simulation works on; saved to Mongo write-behind
+    private FleetStateService fleetState;
+    @Autowired // Records emptied bins in the fill-level history
+    private BinHistoryService binHistory;
+    @Autowired // Live position stream for the map
+    private FleetStreamService fleetStream;
+    @Autowired
+    private KeysetPager pager;
     // AuditLogService removed
 
-    private final Random random = new Random();
+    // Fast-forward speed model: average driving speed and time spent emptying one bin
+    @Value("${simulation.truck-speed-kmh:20}")
+    private double truckSpeedKmh;
+    @Value("${simulation.bin-service-minutes:2}")
+    private double binServiceMinutes;
+
+    // Worker threads that advance truck shards in parallel (0 = one per CPU core)
+    @Value("${simulation.parallelism:0}")
+    private int simulationParallelism;
+    private ForkJoinPool simulationPool;
+
+    // Ticks and REST edits both change the resident Truck objects, so they take turns
+    private final Object simulationLock = new Object();
     // Simulation constant: How far the truck moves each 'tick' (in km)
     private static final double SIMULATION_STEP_KM = 0.05; // Approx 50 meters
 
@@ -39,18 +70,33 @@ public class TruckService {
     }};
     private static final double TRUCK_OVERLOAD_THRESHOLD = 95.0; // Alert threshold
     private static final double TRUCK_FULL_THRESHOLD = 100.0; // Force return threshold
+    private static final int HANDOVER_CANDIDATES = 5; // Nearest IDLE trucks tried, in order, for an overload hand-over
 
 
     // =====================================================
     // GET all trucks / GET one truck by ID / DELETE a truck
-    // (These methods remain unchanged)
+    // (Reads come from the resident fleet state, which is ahead of Mongo between flushes)
     // =====================================================
-    public List<Truck> getAllTrucks() { return truckRepository.findAll(); }
-    public Optional<Truck> getTruckById(String id) { return truckRepository.findById(id); }
+    public List<Truck> getAllTrucks() { return fleetState.getTrucks(); }
+
+    // One page in id order: ids come from Mongo (_id index only), the trucks from resident state
+    public KeysetPager.KeysetPage<?> getTrucksPage(String cursor, Integer limit, String fields) {
+        Set<String> selected = pager.parseFields(Truck.class, fields);
+        KeysetPager.KeysetPage<Truck> ids = pager.byId(Truck.class, null, cursor, limit, Set.of("id"));
+        List<Truck> trucks = ids.items().stream()
+                .map(truck -> fleetState.getTruck(truck.getId()).orElse(null))
+                .filter(Objects::nonNull)
+                .toList();
+        return pager.select(new KeysetPager.KeysetPage<>(trucks, ids.nextCursor()), selected);
+    }
+    public Optional<Truck> getTruckById(String id) { return fleetState.getTruck(id); }
     public boolean deleteTruck(String id) {
         if (truckRepository.existsById(id)) {
             // Optional: Add logging before delete if needed without AuditService
             truckRepository.deleteById(id);
+            fleetState.removeTruck(id);
+            locationIndex.removeTruck(id);
+            fleetStream.publishRemoved(id);
             return true;
         }
         return false;
@@ -63,14 +109,18 @@ public class TruckService {
     public Truck createTruck(Truck truck) {
         truck.setCurrentFillLevel(0.0);
         truck.setStatus(Truck.TruckStatus.IDLE);
-        truck.setCurrentRoute(null);
+        truck.setRoute(null);
         if (truck.getCurrentLocation() == null) {
             Bin.Location startLocation = new Bin.Location();
-            startLocation.setLatitude(DEPOT_LOCATION.getLatitude() + (random.nextDouble() - 0.5) * 0.01); // Near depot
-            startLocation.setLongitude(DEPOT_LOCATION.getLongitude() + (random.nextDouble() - 0.5) * 0.01);
+            startLocation.setLatitude(DEPOT_LOCATION.getLatitude() + (random().nextDouble() - 0.5) * 0.01); // Near depot
+            startLocation.setLongitude(DEPOT_LOCATION.getLongitude() + (random().nextDouble() - 0.5) * 0.01);
             truck.setCurrentLocation(startLocation);
         }
-        return truckRepository.save(truck);
+        Truck savedTruck = truckRepository.save(truck);
+        fleetState.putTruck(savedTruck);
+        locationIndex.indexTruck(savedTruck);
+        fleetStream.publishChanges(List.of(savedTruck));
+        return savedTruck;
     }
 
     // =====================================================
@@ -78,7 +128,13 @@ public class TruckService {
     // (Unchanged)
     // =====================================================
     public Optional<Truck> updateTruck(String id, Truck truckDetails) {
-        Optional<Truck> optionalTruck = truckRepository.findById(id);
+        synchronized (simulationLock) {
+            return applyTruckUpdate(id, truckDetails);
+        }
+    }
+
+    private Optional<Truck> applyTruckUpdate(String id, Truck truckDetails) {
+        Optional<Truck> optionalTruck = fleetState.getTruck(id);
         if (optionalTruck.isPresent()) {
             Truck existingTruck = optionalTruck.get();
             existingTruck.setLicensePlate(truckDetails.getLicensePlate());
@@ -88,117 +144,279 @@ public class TruckService {
             existingTruck.setCurrentLocation(truckDetails.getCurrentLocation());
             // Make sure route is also updated if provided, or cleared if status is IDLE/RETURNING without route
             if (truckDetails.getStatus() == Truck.TruckStatus.IDLE) {
-                existingTruck.setCurrentRoute(null);
-            } else if (truckDetails.getStatus() == Truck.TruckStatus.RETURNING && (truckDetails.getCurrentRoute() == null || truckDetails.getCurrentRoute().isEmpty())) {
+                existingTruck.setRoute(null);
+            } else if (truckDetails.getStatus() == Truck.TruckStatus.RETURNING && (truckDetails.getRoute() == null || truckDetails.getRoute().isFinished())) {
                 // If manually set to RETURNING without a route, set depot route
-                existingTruck.setCurrentRoute(Collections.singletonList(List.of(DEPOT_LOCATION.getLatitude(), DEPOT_LOCATION.getLongitude())));
+                existingTruck.setRoute(depotRoute());
             }
             else {
                 // Otherwise, accept the route provided (or keep existing if not provided)
-                if (truckDetails.getCurrentRoute() != null) {
-                    existingTruck.setCurrentRoute(truckDetails.getCurrentRoute());
+                if (truckDetails.getRoute() != null) {
+                    existingTruck.setRoute(truckDetails.getRoute());
                 }
             }
-            return Optional.of(truckRepository.save(existingTruck));
+            Truck savedTruck = truckRepository.save(existingTruck);
+            fleetState.putTruck(savedTruck);
+            locationIndex.indexTruck(savedTruck);
+            fleetStream.publishChanges(List.of(savedTruck));
+            return Optional.of(savedTruck);
         }
         return Optional.empty();
     }
 
 
     // =====================================================
-    // SMART SIMULATION METHOD V3.2 (Includes Bin Emptying)
+    // Start a truck on a newly generated route (routing endpoints)
     // =====================================================
-    @Transactional // Ensures all DB updates succeed or fail together
+    public Optional<Truck> assignRoute(String truckId, WaypointRoute route) {
+        synchronized (simulationLock) {
+            Optional<Truck> optionalTruck = fleetState.getTruck(truckId);
+            optionalTruck.ifPresent(truck -> {
+                truck.setRoute(route);
+                truck.setStatus(Truck.TruckStatus.EN_ROUTE);
+                fleetState.markTruckDirty(truck);
+                locationIndex.indexTruck(truck);
+                fleetStream.publishChanges(List.of(truck));
+            });
+            return optionalTruck;
+        }
+    }
+
+
+    // =====================================================
+    // SMART SIMULATION METHOD V3.4 (In-memory, write-behind, sharded)
+    // =====================================================
+    // Works on the resident fleet state only: changed trucks and bins are marked dirty and
+    // FleetStateService saves them in the background, so a tick never waits on Mongo.
+    // Moving trucks are split into shards advanced in parallel; the overload hand-over, the
+    // only step that touches a second truck, runs afterwards on the calling thread.
     public void simulateTruckMovement() {
-        // Find trucks actively working on a route (EN_ROUTE or RETURNING with a non-empty route)
-        List<Truck> activeTrucks = truckRepository.findAll().stream()
-                .filter(truck -> (truck.getStatus() == Truck.TruckStatus.EN_ROUTE || truck.getStatus() == Truck.TruckStatus.RETURNING) &&
-                        truck.getCurrentRoute() != null && !truck.getCurrentRoute().isEmpty())
+        synchronized (simulationLock) {
+            advanceTrucks();
+        }
+    }
+
+    private void advanceTrucks() {
+        // Trucks following a route (EN_ROUTE or RETURNING with a non-empty route), plus
+        // EN_ROUTE trucks without a route yet, which wander randomly
+        List<Truck> movingTrucks = fleetState.getTrucks().stream()
+                .filter(truck -> isFollowingRoute(truck) || isRandomMover(truck))
                 .toList();
+        if (movingTrucks.isEmpty()) {
+            return; // Nothing to move
+        }
 
-        // Handle randomly moving EN_ROUTE trucks separately (those without a route yet)
-        simulateRandomMovementForUnroutedTrucks();
+        List<List<Truck>> shards = partition(movingTrucks);
+        List<TickChanges> shardChanges = simulationPool.submit(() -> shards.parallelStream()
+                .map(this::advanceShard)
+                .toList()).join();
 
-        if (activeTrucks.isEmpty()) {
-            return; // No trucks following a route
+        TickChanges changes = new TickChanges();
+        for (TickChanges shard : shardChanges) {
+            changes.trucks.addAll(shard.trucks);
+            changes.bins.putAll(shard.bins); // Two trucks emptying the same bin: one write, one reading
+            changes.handovers.addAll(shard.handovers);
+        }
+        for (Handover handover : changes.handovers) {
+            handleOverloadAssignment(handover.overloadedTruck(), handover.remainingRoute(), changes);
         }
 
-        List<Truck> trucksToSave = new ArrayList<>(); // Collect trucks needing saving within the transaction
-        List<Bin> binsToSave = new ArrayList<>(); // ++ List to collect updated bins ++
+        // Hand changes to the write-behind flusher
+        if (!changes.trucks.isEmpty()) {
+            fleetState.markTrucksDirty(changes.trucks);
+            locationIndex.indexTrucks(changes.trucks);
+            fleetStream.publishChanges(changes.trucks); // One delta per tick
+        }
+        // ++ Updated (emptied) bins ++
+        changes.bins.values().forEach(fleetState::markBinDirty);
+        changes.bins.keySet().forEach(binId -> binHistory.record(binId, 0.0));
+    }
 
+    private TickChanges advanceShard(List<Truck> shard) {
+        TickChanges changes = new TickChanges();
+        for (Truck truck : shard) {
+            if (isRandomMover(truck)) {
+                moveRandomly(truck);
+            } else {
+                advanceAlongRoute(truck, changes);
+            }
+            changes.trucks.add(truck); // Every moving truck changes position or state this tick
+        }
+        return changes;
+    }
 
-        for (Truck truck : activeTrucks) {
-            Bin.Location currentLocation = truck.getCurrentLocation();
-            // Important: Get a mutable copy of the route if it exists, otherwise empty list
-            List<List<Double>> route = truck.getCurrentRoute() != null ? new ArrayList<>(truck.getCurrentRoute()) : new ArrayList<>();
-            Bin.Location targetLocation;
+    private void advanceAlongRoute(Truck truck, TickChanges changes) {
+        Bin.Location currentLocation = truck.getCurrentLocation();
+        WaypointRoute route = routeToFollow(truck);
 
-            // Ensure route isn't empty after filtering
-            if (route.isEmpty()) {
-                System.err.println("Truck " + truck.getId() + " (" + truck.getStatus() + ") is active but has empty route. Setting to IDLE.");
-                handleRouteCompletion(truck, isLocationEqual(currentLocation, DEPOT_LOCATION)); // Use helper
-                trucksToSave.add(truck);
-                continue; // Skip rest of loop for this truck
-            }
+        // Ensure route isn't empty after filtering
+        if (route == null || route.isFinished()) {
+            System.err.println("Truck " + truck.getId() + " (" + truck.getStatus() + ") is active but has empty route. Setting to IDLE.");
+            handleRouteCompletion(truck, isLocationEqual(currentLocation, DEPOT_LOCATION)); // Use helper
+            return;
+        }
+        Bin.Location targetLocation = route.nextLocation();
 
-            // Determine Target
-            if (truck.getStatus() == Truck.TruckStatus.RETURNING) {
-                // Ensure route is *only* the depot if returning
-                if (route.size() > 1 || !isLocationEqual(createLocationFromCoords(route.get(0)), DEPOT_LOCATION)) {
-                    System.out.println("Correcting route for RETURNING truck " + truck.getId());
-                    route = new ArrayList<>(Collections.singletonList(List.of(DEPOT_LOCATION.getLatitude(), DEPOT_LOCATION.getLongitude())));
-                }
-                targetLocation = createLocationFromCoords(route.get(0)); // Get target from corrected route
+        // Safety check for current location
+        if (currentLocation == null) {
+            currentLocation = initializeLocationNear(targetLocation);
+            truck.setCurrentLocation(currentLocation);
+        }
 
-            } else { // EN_ROUTE
-                targetLocation = createLocationFromCoords(route.get(0));
-            }
 
-            // Safety check for current location
-            if (currentLocation == null) {
-                currentLocation = initializeLocationNear(targetLocation);
-                truck.setCurrentLocation(currentLocation);
+        double distanceToTarget = Node.calculateDistance(currentLocation, targetLocation);
+
+        // Check if reached target
+        if (distanceToTarget < SIMULATION_STEP_KM) {
+            // --- Waypoint Reached Logic ---
+            handleWaypointReached(truck, targetLocation, route, changes); // Modifies truck status/route/fill & may empty a bin
+        } else {
+            // --- Move Towards Target Logic ---
+            moveTruckTowards(truck, targetLocation); // Modifies truck location
+        }
+    }
+
+    // =====================================================
+    // FAST-FORWARD (discrete-event)
+    // =====================================================
+    // Jumps from one waypoint arrival to the next instead of moving every truck 50 m per tick.
+    // Arrival times come from the straight-line leg distance and the truck speed; stopping at a
+    // bin adds the service time. Each arrival runs the same waypoint logic as a tick (collection,
+    // bin emptying, overload hand-over, depot return) and the end state is saved once.
+    public FastForwardResult fastForward(double hours) {
+        synchronized (simulationLock) {
+            long start = System.currentTimeMillis();
+            PriorityQueue<Arrival> arrivals = new PriorityQueue<>(Comparator.comparingDouble(Arrival::arriveHours));
+            for (Truck truck : fleetState.getTrucks()) {
+                if (isFollowingRoute(truck)) scheduleNextArrival(truck, 0.0, arrivals);
             }
-            // Safety check for target location
-            if(targetLocation == null){
-                System.err.println("Target location is null for truck " + truck.getId() + ". Setting to IDLE.");
-                handleRouteCompletion(truck, isLocationEqual(currentLocation, DEPOT_LOCATION));
-                trucksToSave.add(truck);
-                continue;
+
+            Map<String, Truck> changedTrucks = new HashMap<>();
+            Map<String, Bin> emptiedBins = new LinkedHashMap<>(); // A bin visited twice is emptied (and written) once
+            int arrivalCount = 0;
+            int handoverCount = 0;
+            while (!arrivals.isEmpty() && arrivals.peek().arriveHours() <= hours) {
+                Arrival arrival = arrivals.poll();
+                Truck truck = arrival.truck();
+                TickChanges changes = new TickChanges();
+                WaypointRoute route = routeToFollow(truck);
+                if (arrival.to() == null || route == null || route.isFinished()) {
+                    handleRouteCompletion(truck, isLocationEqual(truck.getCurrentLocation(), DEPOT_LOCATION));
+                } else {
+                    handleWaypointReached(truck, route.nextLocation(), route, changes);
+                }
+                arrivalCount++;
+                changedTrucks.put(truck.getId(), truck);
+                emptiedBins.putAll(changes.bins);
+                locationIndex.indexTruck(truck);
+
+                for (Handover handover : changes.handovers) {
+                    Truck assigned = handleOverloadAssignment(handover.overloadedTruck(), handover.remainingRoute(), changes);
+                    if (assigned != null) {
+                        handoverCount++;
+                        changedTrucks.put(assigned.getId(), assigned);
+                        scheduleNextArrival(assigned, arrival.arriveHours(), arrivals);
+                    }
+                }
+                if (isFollowingRoute(truck)) {
+                    double serviceHours = changes.bins.isEmpty() ? 0.0 : binServiceMinutes / 60.0;
+                    scheduleNextArrival(truck, arrival.arriveHours() + serviceHours, arrivals);
+                }
             }
 
+            // Trucks still between waypoints stop part-way along their current leg
+            for (Arrival pending : arrivals) {
+                double legHours = pending.arriveHours() - pending.departHours();
+                double progress = legHours > 0 ? (hours - pending.departHours()) / legHours : 0.0;
+                if (progress <= 0) continue; // Still servicing a bin, or not moved
+                Bin.Location position = new Bin.Location();
+                position.setLatitude(pending.from().getLatitude() + (pending.to().getLatitude() - pending.from().getLatitude()) * progress);
+                position.setLongitude(pending.from().getLongitude() + (pending.to().getLongitude() - pending.from().getLongitude()) * progress);
+                pending.truck().setCurrentLocation(position);
+                changedTrucks.put(pending.truck().getId(), pending.truck());
+                locationIndex.indexTruck(pending.truck());
+            }
 
-            double distanceToTarget = Node.calculateDistance(currentLocation, targetLocation);
+            fleetState.markTrucksDirty(changedTrucks.values());
+            fleetStream.publishChanges(changedTrucks.values());
+            // Recorded at wall-clock time: sensor history never holds readings from the future
+            Instant emptiedAt = Instant.now();
+            emptiedBins.values().forEach(bin -> binHistory.record(bin.getId(), 0.0, emptiedAt));
+            emptiedBins.values().forEach(fleetState::markBinDirty);
+            fleetState.flush(); // Only the end state reaches Mongo
+            long elapsed = System.currentTimeMillis() - start;
+            System.out.println("Fast-forwarded " + hours + " h: " + arrivalCount + " arrivals, " + emptiedBins.size()
+                    + " bins emptied, " + handoverCount + " hand-overs in " + elapsed + " ms.");
+            return new FastForwardResult(hours, arrivalCount, emptiedBins.size(), handoverCount, changedTrucks.size(), elapsed);
+        }
+    }
 
-            // Check if reached target
-            if (distanceToTarget < SIMULATION_STEP_KM) {
-                // --- Waypoint Reached Logic ---
-                // Pass the mutable 'route' list AND the 'binsToSave' list
-                handleWaypointReached(truck, targetLocation, route, binsToSave); // Modifies truck status/route/fill & potentially adds to binsToSave
-                trucksToSave.add(truck); // Mark truck for saving
+    // Queues the truck's arrival at its next waypoint, leaving at departHours
+    private void scheduleNextArrival(Truck truck, double departHours, PriorityQueue<Arrival> arrivals) {
+        WaypointRoute route = routeToFollow(truck);
+        Bin.Location target = route == null || route.isFinished() ? null : route.nextLocation();
+        if (target == null) { // Nothing to drive to: handled as an immediate arrival (route completion)
+            arrivals.add(new Arrival(truck, departHours, departHours, truck.getCurrentLocation(), null));
+            return;
+        }
+        if (truck.getCurrentLocation() == null) {
+            truck.setCurrentLocation(initializeLocationNear(target));
+        }
+        Bin.Location from = new Bin.Location(); // Copy: the waypoint logic replaces the truck's location
+        from.setLatitude(truck.getCurrentLocation().getLatitude());
+        from.setLongitude(truck.getCurrentLocation().getLongitude());
+        double travelHours = Node.calculateDistance(from, target) / truckSpeedKmh;
+        arrivals.add(new Arrival(truck, departHours, departHours + travelHours, from, target));
+    }
 
-            } else {
-                // --- Move Towards Target Logic ---
-                moveTruckTowards(truck, targetLocation); // Modifies truck location
-                trucksToSave.add(truck); // Mark truck for saving
-            }
-        } // End loop through active trucks
+    // The truck's route (may be null), cursor on the next waypoint. A RETURNING truck only ever heads for the depot.
+    private WaypointRoute routeToFollow(Truck truck) {
+        WaypointRoute route = truck.getRoute();
+        if (truck.getStatus() == Truck.TruckStatus.RETURNING && route != null && !route.isFinished() &&
+                (route.remaining() > 1 || !isLocationEqual(route.nextLocation(), DEPOT_LOCATION))) {
+            System.out.println("Correcting route for RETURNING truck " + truck.getId());
+            route = depotRoute();
+            truck.setRoute(route);
+        }
+        return route;
+    }
 
-        // Save all changes transactionally
-        if (!trucksToSave.isEmpty()) {
-            truckRepository.saveAll(trucksToSave);
-            System.out.println("Saved " + trucksToSave.size() + " truck updates.");
+    // Stable truck -> shard assignment, a few shards per worker so one busy shard doesn't hold up the tick
+    private List<List<Truck>> partition(List<Truck> trucks) {
+        int shardCount = Math.min(trucks.size(), simulationPool.getParallelism() * 4);
+        List<List<Truck>> shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new ArrayList<>());
         }
-        // ++ Save updated bins ++
-        if (!binsToSave.isEmpty()) {
-            binRepository.saveAll(binsToSave);
-            System.out.println("Saved " + binsToSave.size() + " bin updates (emptied).");
+        for (Truck truck : trucks) {
+            shards.get(Math.floorMod(truck.getId().hashCode(), shardCount)).add(truck);
         }
+        return shards;
+    }
+
+    private boolean isFollowingRoute(Truck truck) {
+        return (truck.getStatus() == Truck.TruckStatus.EN_ROUTE || truck.getStatus() == Truck.TruckStatus.RETURNING) &&
+                truck.getRoute() != null && !truck.getRoute().isFinished();
     }
 
+    private boolean isRandomMover(Truck truck) {
+        return truck.getStatus() == Truck.TruckStatus.EN_ROUTE && (truck.getRoute() == null || truck.getRoute().isFinished());
+    }
 
-    // HELPER: Logic when a truck reaches a waypoint (Modifies truck, route list, AND ADDS TO BINS TO SAVE LIST)
-    private void handleWaypointReached(Truck truck, Bin.Location targetLocation, List<List<Double>> route, List<Bin> binsToSave) { // ++ Added binsToSave ++
+    @PostConstruct
+    private void initSimulationPool() {
+        int parallelism = simulationParallelism > 0 ? simulationParallelism : Runtime.getRuntime().availableProcessors();
+        simulationPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    private void shutdownSimulationPool() {
+        simulationPool.shutdown();
+    }
+
+
+    // HELPER: Logic when a truck reaches a waypoint (Modifies truck, its route, AND ADDS TO BINS TO SAVE LIST)
+    private void handleWaypointReached(Truck truck, Bin.Location targetLocation, WaypointRoute route, TickChanges changes) {
         System.out.println("Truck " + truck.getId() + " reached waypoint: " + targetLocation.getLatitude() + "," + targetLocation.getLongitude());
         truck.setCurrentLocation(targetLocation); // Snap to target
 
@@ -207,40 +425,36 @@ public class TruckService {
         // ++ Variable to store ID of the bin at this location ++
         String reachedBinId = null;
         if (!isDepotWaypoint) {
-            // Try to find the bin at this location to get its ID
-            Optional<Bin> reachedBinOpt = findBinByLocation(targetLocation);
-            if(reachedBinOpt.isPresent()){
-                reachedBinId = reachedBinOpt.get().getId();
-            } else {
-                System.err.println("Warning: Truck " + truck.getId() + " reached a non-depot waypoint but could not find corresponding Bin in DB.");
-            }
+            // Planned routes carry each stop's bin ID (null = a pass-through point on the road geometry
+            // between stops). Routes sent as plain coordinates fall back to a location lookup.
+            reachedBinId = route.hasBinIds() ? route.nextBinId() : locationIndex.findBinAt(targetLocation).orElse(null);
         }
+        double plannedLoad = route.nextPlannedLoad();
 
-        // Remove reached waypoint from the route list (passed by reference)
-        if (!route.isEmpty()) {
-            route.remove(0);
-        } else {
-            System.err.println("Error: Reached waypoint but route list was already empty for truck " + truck.getId());
-        }
+        // Move the route cursor past the reached waypoint
+        route.advance();
 
-        // --- Handle Collection, Bin Emptying & Overload ---
-        if (!isDepotWaypoint && truck.getStatus() == Truck.TruckStatus.EN_ROUTE) {
-            double fillIncrease = 15.0 + (random.nextDouble() * 10.0);
+        // --- Handle Collection, Bin Emptying & Overload (only at stops that hold a bin) ---
+        if (reachedBinId != null && truck.getStatus() == Truck.TruckStatus.EN_ROUTE) {
+            // Planned load as a share of truck capacity when the planner knew it, otherwise a typical 15-25%
+            double fillIncrease = plannedLoad > 0 && truck.getCapacity() != null && truck.getCapacity() > 0
+                    ? plannedLoad / truck.getCapacity() * 100.0
+                    : 15.0 + (random().nextDouble() * 10.0);
             double oldFillLevel = truck.getCurrentFillLevel() != null ? truck.getCurrentFillLevel() : 0.0;
             double newFillLevel = Math.min(100.0, oldFillLevel + fillIncrease);
             truck.setCurrentFillLevel(newFillLevel);
             System.out.println("Truck " + truck.getLicensePlate() + " collected waste. Fill: " + String.format("%.1f", newFillLevel) + "%");
 
             // ++ Empty the Bin ++
-            if(reachedBinId != null) {
-                Optional<Bin> collectedBinOpt = binRepository.findById(reachedBinId); // Fetch again by ID for safety within transaction
-                collectedBinOpt.ifPresent(bin -> {
+            Optional<Bin> collectedBinOpt = fleetState.getBin(reachedBinId); // Resident copy, saved by the flusher
+            collectedBinOpt.ifPresent(bin -> {
+                synchronized (bin) { // Sensor readings update bins concurrently (BinService.ingestReadings)
                     System.out.println("Emptying Bin: " + bin.getId() + " (Old level: " + bin.getFillLevel() + ")");
                     bin.setFillLevel(0.0); // Reset fill level
                     bin.setStatus(Bin.BinStatus.EMPTY); // Update status
-                    binsToSave.add(bin); // Add to list for saving later
-                });
-            }
+                }
+                changes.bins.put(bin.getId(), bin); // Add to list for saving later
+            });
             // ++ End Bin Emptying ++
 
 
@@ -251,12 +465,9 @@ public class TruckService {
             if (isNowFull) { // Check for 100% first
                 System.out.println("Truck " + truck.getLicensePlate() + " is full (>=100%)! Returning to depot.");
                 truck.setStatus(Truck.TruckStatus.RETURNING);
-                List<List<Double>> remainingRoute = new ArrayList<>(route); // Copy remaining waypoints BEFORE clearing route
-                // Set current truck's route to only the depot
-                route.clear(); // Clear the original list
-                route.add(List.of(DEPOT_LOCATION.getLatitude(), DEPOT_LOCATION.getLongitude()));
-                truck.setCurrentRoute(new ArrayList<>(route)); // Explicitly set the new route (copy is important)
-                handleOverloadAssignment(truck, remainingRoute); // Try reassigning the COPY
+                WaypointRoute remainingRoute = route.rest(); // Copy remaining waypoints BEFORE replacing the route
+                truck.setRoute(depotRoute()); // Current truck now only heads for the depot
+                changes.handovers.add(new Handover(truck, remainingRoute)); // Reassign the COPY once all shards are done
                 return; // Exit helper early, route has been changed
 
             } else if (justBecameOverloaded) { // Only trigger alert if just crossed 95% but not yet 100%
@@ -268,18 +479,15 @@ public class TruckService {
         }
 
         // --- Check if route is now complete ---
-        if (route.isEmpty()) {
+        if (route.isFinished()) {
             handleRouteCompletion(truck, isDepotWaypoint); // This will set route to null
-        } else {
-            // If route wasn't cleared by overload/completion, update truck's route field
-            truck.setCurrentRoute(new ArrayList<>(route)); // Update with remaining waypoints (copy is important)
         }
     }
 
     // HELPER: Logic for completing a route (Clears route field)
     private void handleRouteCompletion(Truck truck, boolean arrivedAtDepot) {
         truck.setStatus(Truck.TruckStatus.IDLE);
-        truck.setCurrentRoute(null); // ++ Explicitly set route to null ++
+        truck.setRoute(null); // ++ Explicitly set route to null ++
         System.out.println("Truck " + truck.getLicensePlate() + " completed route, now IDLE at " + (arrivedAtDepot ? "Depot" : "last stop") + ".");
         if (arrivedAtDepot) {
             truck.setCurrentFillLevel(0.0); // Empty truck at depot
@@ -310,66 +518,55 @@ public class TruckService {
     }
 
 
-    // HELPER: Handle route reassignment on overload
-    private void handleOverloadAssignment(Truck overloadedTruck, List<List<Double>> remainingRoute) {
-        if (remainingRoute == null || remainingRoute.isEmpty()) {
+    // HELPER: Handle route reassignment on overload. Returns the truck that took over, or null.
+    private Truck handleOverloadAssignment(Truck overloadedTruck, WaypointRoute remainingRoute, TickChanges changes) {
+        if (remainingRoute == null || remainingRoute.isFinished()) {
             System.out.println("Truck " + overloadedTruck.getLicensePlate() + " overloaded, but no remaining route to assign.");
-            return;
+            return null;
         }
-        List<Double> nextWaypointCoords = remainingRoute.get(0);
-        Bin.Location nextWaypointLocation = createLocationFromCoords(nextWaypointCoords);
-        if (nextWaypointLocation == null) { System.err.println("Could not determine next waypoint location for reassignment."); return; }
+        Bin.Location nextWaypointLocation = remainingRoute.nextLocation();
 
-        List<Truck> idleTrucks = truckRepository.findAll().stream()
-                .filter(t -> t.getStatus() == Truck.TruckStatus.IDLE && !t.getId().equals(overloadedTruck.getId()))
-                .toList();
-        if (idleTrucks.isEmpty()) { System.out.println("Truck " + overloadedTruck.getLicensePlate() + " overloaded, but no IDLE trucks available."); return; }
+        List<String> idleTruckIds = locationIndex.findNearestTrucks(nextWaypointLocation, HANDOVER_CANDIDATES, Truck.TruckStatus.IDLE, overloadedTruck.getId());
+        if (idleTruckIds.isEmpty()) { System.out.println("Truck " + overloadedTruck.getLicensePlate() + " overloaded, but no IDLE trucks available."); return null; }
 
-        Truck closestIdleTruck = idleTrucks.stream()
-                .min(Comparator.comparingDouble(idleTruck ->
-                        Node.calculateDistance(idleTruck.getCurrentLocation() != null ? idleTruck.getCurrentLocation() : DEPOT_LOCATION, nextWaypointLocation) ))
+        // Index is refreshed on every write, but re-check the truck; a stale nearest entry falls through to the next one
+        Truck closestIdleTruck = idleTruckIds.stream()
+                .map(fleetState::getTruck)
+                .flatMap(Optional::stream)
+                .filter(t -> t.getStatus() == Truck.TruckStatus.IDLE)
+                .findFirst()
                 .orElse(null);
 
         if (closestIdleTruck != null) {
             System.out.println("Reassigning remaining route from " + overloadedTruck.getLicensePlate() + " to " + closestIdleTruck.getLicensePlate());
-            closestIdleTruck.setCurrentRoute(new ArrayList<>(remainingRoute)); // Assign a copy
+            closestIdleTruck.setRoute(remainingRoute); // Already a copy of the overloaded truck's remaining waypoints
             closestIdleTruck.setStatus(Truck.TruckStatus.EN_ROUTE);
-            truckRepository.save(closestIdleTruck); // Save the newly assigned truck (happens within transaction)
+            changes.trucks.add(closestIdleTruck); // Saved with the rest of the tick's changes
+            locationIndex.indexTruck(closestIdleTruck); // No longer IDLE for the next hand-over in this tick
             String message = String.format("Route from %s reassigned to %s due to overload.", overloadedTruck.getLicensePlate(), closestIdleTruck.getLicensePlate());
             alertService.createAlert(Alert.AlertType.ROUTE_DELAY, message, closestIdleTruck.getId());
         } else { System.out.println("Error: Could not find closest idle truck."); }
+        return closestIdleTruck;
     }
 
 
-    // HELPER: Random movement for unrouted trucks
-    private void simulateRandomMovementForUnroutedTrucks() {
-        List<Truck> randomMovers = truckRepository.findAll().stream()
-                .filter(truck -> truck.getStatus() == Truck.TruckStatus.EN_ROUTE && (truck.getCurrentRoute() == null || truck.getCurrentRoute().isEmpty()))
-                .toList();
-        if (!randomMovers.isEmpty()){
-            for (Truck truck : randomMovers) {
-                Bin.Location currentLocation = truck.getCurrentLocation();
-                if (currentLocation == null) { currentLocation = initializeLocationNear(DEPOT_LOCATION); }
-                double latChange = (random.nextDouble() - 0.5) * 0.001; double lonChange = (random.nextDouble() - 0.5) * 0.001;
-                currentLocation.setLatitude(currentLocation.getLatitude() + latChange); currentLocation.setLongitude(currentLocation.getLongitude() + lonChange);
-                truck.setCurrentLocation(currentLocation);
-                // Save individually here as it's outside the main transaction loop for active trucks
-                truckRepository.save(truck);
-            }
-        }
+    // HELPER: Random movement for an unrouted EN_ROUTE truck
+    private void moveRandomly(Truck truck) {
+        Bin.Location currentLocation = truck.getCurrentLocation();
+        if (currentLocation == null) { currentLocation = initializeLocationNear(DEPOT_LOCATION); }
+        double latChange = (random().nextDouble() - 0.5) * 0.001; double lonChange = (random().nextDouble() - 0.5) * 0.001;
+        currentLocation.setLatitude(currentLocation.getLatitude() + latChange); currentLocation.setLongitude(currentLocation.getLongitude() + lonChange);
+        truck.setCurrentLocation(currentLocation);
     }
 
     // --- Utility Helpers ---
-    private Bin.Location createLocationFromCoords(List<Double> coords) {
-        if (coords == null || coords.size() < 2 || coords.get(0) == null || coords.get(1) == null) return null;
-        Bin.Location loc = new Bin.Location();
-        loc.setLatitude(coords.get(0)); loc.setLongitude(coords.get(1)); return loc;
-    }
+    private static Random random() { return ThreadLocalRandom.current(); } // Shards run on several threads
+    private static WaypointRoute depotRoute() { return WaypointRoute.to(DEPOT_LOCATION.getLatitude(), DEPOT_LOCATION.getLongitude()); }
     private Bin.Location initializeLocationNear(Bin.Location target) {
         Bin.Location start = new Bin.Location();
         Bin.Location reference = (target != null) ? target : DEPOT_LOCATION;
-        start.setLatitude(reference.getLatitude() + (random.nextDouble() - 0.5) * 0.001); // Start nearby
-        start.setLongitude(reference.getLongitude() + (random.nextDouble() - 0.5) * 0.001); return start;
+        start.setLatitude(reference.getLatitude() + (random().nextDouble() - 0.5) * 0.001); // Start nearby
+        start.setLongitude(reference.getLongitude() + (random().nextDouble() - 0.5) * 0.001); return start;
     }
     private boolean isLocationEqual(Bin.Location loc1, Bin.Location loc2) {
         if (loc1 == null || loc2 == null) return false;
@@ -377,15 +574,19 @@ public class TruckService {
         return Math.abs(loc1.getLatitude() - loc2.getLatitude()) < tolerance &&
                 Math.abs(loc1.getLongitude() - loc2.getLongitude()) < tolerance;
     }
-    // ++ NEW HELPER: Find Bin by Location (needed for emptying) ++
-    private Optional<Bin> findBinByLocation(Bin.Location targetLocation) {
-        if (targetLocation == null) return Optional.empty();
-        // Find bin where location matches closely (using tolerance)
-        // Note: This could be inefficient if there are many bins.
-        // A spatial index in MongoDB would be better for a real application.
-        return binRepository.findAll().stream()
-                .filter(bin -> bin.getLocation() != null &&
-                        isLocationEqual(bin.getLocation(), targetLocation))
-                .findFirst();
+
+    // What one tick (or one shard of it) changed, handed to the write-behind flusher afterwards
+    private static class TickChanges {
+        final List<Truck> trucks = new ArrayList<>();
+        final Map<String, Bin> bins = new LinkedHashMap<>(); // Keyed by ID: a bin is saved once per tick
+        final List<Handover> handovers = new ArrayList<>();
     }
-}
\ No newline at end of file
+
+    // A truck that filled up mid-route; its remaining stops go to the closest IDLE truck
+    private record Handover(Truck overloadedTruck, WaypointRoute remainingRoute) {}
+
+    // Fast-forward event: truck leaves `from` at departHours and reaches `to` at arriveHours
+    private record Arrival(Truck truck, double departHours, double arriveHours, Bin.Location from, Bin.Location to) {}
+
+    public record FastForwardResult(double hours, int arrivals, int binsEmptied, int handovers, int trucksChanged, long elapsedMs) {}
+}
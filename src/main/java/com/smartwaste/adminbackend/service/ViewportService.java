@@ -0,0 +1,141 @@
+package com.smartwaste.adminbackend.service;
+
+import com.smartwaste.adminbackend.model.Bin;
+import com.smartwaste.adminbackend.model.Truck;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+// What the map shows for a viewport: only the bins / trucks inside the visible box, answered from
+// the in-memory location index and resident fleet state (no Mongo query).
+//
+// Below clusterBelowZoom, or when the box holds more than maxMarkers points, the box is cut into
+// grid cells about clusterCellPixels wide on screen and each cell comes back as one aggregate
+// (count, max fill, centroid). The payload then depends on the screen size, not on how many
+// bins there are. Cells are aligned to fixed coordinates and sized by the zoom level alone, so
+// clusters don't jump while panning.
+@Service
+public class ViewportService {
+
+    private static final int TILE_PIXELS = 256; // Web Mercator tile size (Leaflet, Mapbox, Google)
+    public static final int MAX_ZOOM = 22;
+
+    @Autowired
+    private LocationIndexService locationIndex;
+
+    @Autowired
+    private FleetStateService fleetState;
+
+    @Value("${viewport.cluster-below-zoom:15}")
+    private int clusterBelowZoom;
+    @Value("${viewport.cluster-cell-pixels:64}")
+    private int clusterCellPixels;
+    @Value("${viewport.max-markers:2000}")
+    private int maxMarkers;
+    @Value("${viewport.reference-latitude:6.93}")
+    private double referenceLatitude;
+
+    // Visible area; parsed from "minLon,minLat,maxLon,maxLat" (west,south,east,north, as Leaflet's toBBoxString)
+    public record BoundingBox(double minLat, double minLon, double maxLat, double maxLon) {
+
+        public static BoundingBox parse(String bbox) {
+            String[] parts = bbox.split(",");
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat.");
+            }
+            double[] values = new double[4];
+            try {
+                for (int i = 0; i < 4; i++) values[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("bbox must be minLon,minLat,maxLon,maxLat.");
+            }
+            BoundingBox box = new BoundingBox(values[1], values[0], values[3], values[2]);
+            if (box.minLat < -90 || box.maxLat > 90 || box.minLon < -180 || box.maxLon > 180
+                    || box.minLat > box.maxLat || box.minLon > box.maxLon) {
+                throw new IllegalArgumentException("bbox is out of range or not ordered west,south,east,north.");
+            }
+            return box;
+        }
+    }
+
+    // A grid cell's worth of points; id is set when the cell holds a single point, so it can be drawn as a marker
+    public record Cluster(double lat, double lon, int count, Double maxFill, String id) {}
+
+    // Either the points themselves (items) or their clusters, never both
+    public record Viewport<T>(Integer zoom, int total, boolean clustered, List<T> items, List<Cluster> clusters) {}
+
+    // zoom may be null (no map zoom known): then only the marker limit decides whether to cluster
+    public Viewport<Bin> getBins(BoundingBox box, Integer zoom) {
+        List<String> ids = locationIndex.findBinsInBox(box.minLat(), box.minLon(), box.maxLat(), box.maxLon());
+        return viewport(ids, fleetState::getBin, Bin::getId, Bin::getLocation, Bin::getFillLevel, box, zoom);
+    }
+
+    public Viewport<Truck> getTrucks(BoundingBox box, Integer zoom) {
+        List<String> ids = locationIndex.findTrucksInBox(box.minLat(), box.minLon(), box.maxLat(), box.maxLon());
+        return viewport(ids, fleetState::getTruck, Truck::getId, Truck::getCurrentLocation, Truck::getCurrentFillLevel,
+                box, zoom);
+    }
+
+    private <T> Viewport<T> viewport(List<String> ids, Function<String, Optional<T>> lookup, Function<T, String> idOf,
+                                     Function<T, Bin.Location> locationOf, Function<T, Double> fillOf,
+                                     BoundingBox box, Integer zoom) {
+        List<T> found = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            lookup.apply(id).filter(item -> locationOf.apply(item) != null).ifPresent(found::add);
+        }
+        boolean cluster = (zoom != null && zoom < clusterBelowZoom) || found.size() > maxMarkers;
+        if (!cluster) {
+            return new Viewport<>(zoom, found.size(), false, found, List.of());
+        }
+
+        // Cell size: clusterCellPixels screen pixels at this zoom. Without a zoom, the whole zoom level that
+        // fits the box in ~1000 px, so nearby boxes still share one grid.
+        int cellZoom = zoom != null ? zoom : zoomToFit(box);
+        double lonCell = clusterCellPixels * 360.0 / (TILE_PIXELS * Math.pow(2, cellZoom));
+        // Mercator stretches latitude by 1/cos, so a square on screen is shorter in latitude degrees
+        double latCell = lonCell * Math.cos(Math.toRadians(referenceLatitude));
+
+        Map<Long, ClusterSum> cells = new LinkedHashMap<>();
+        for (T item : found) {
+            Bin.Location location = locationOf.apply(item);
+            long key = ((long) Math.floor(location.getLatitude() / latCell) << 32)
+                    | ((long) Math.floor(location.getLongitude() / lonCell) & 0xFFFFFFFFL);
+            cells.computeIfAbsent(key, k -> new ClusterSum()).add(idOf.apply(item), location, fillOf.apply(item));
+        }
+        List<Cluster> clusters = new ArrayList<>(cells.size());
+        for (ClusterSum sum : cells.values()) clusters.add(sum.toCluster());
+        return new Viewport<>(zoom, found.size(), true, List.of(), clusters);
+    }
+
+    private static int zoomToFit(BoundingBox box) {
+        double span = Math.max(box.maxLon() - box.minLon(), box.maxLat() - box.minLat());
+        if (span <= 0) return MAX_ZOOM;
+        int fit = (int) Math.floor(Math.log(360.0 * 1000 / (TILE_PIXELS * span)) / Math.log(2));
+        return Math.max(0, Math.min(MAX_ZOOM, fit));
+    }
+
+    private static final class ClusterSum {
+        private int count;
+        private double latitudeSum, longitudeSum;
+        private Double maxFill;
+        private String firstId;
+
+        void add(String id, Bin.Location location, Double fill) {
+            if (count++ == 0) firstId = id;
+            latitudeSum += location.getLatitude();
+            longitudeSum += location.getLongitude();
+            if (fill != null && (maxFill == null || fill > maxFill)) maxFill = fill;
+        }
+
+        Cluster toCluster() {
+            return new Cluster(latitudeSum / count, longitudeSum / count, count, maxFill, count == 1 ? firstId : null);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.smartwaste.adminbackend.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContractionHierarchyTests {
+
+	private static final int SIDE = 25;
+
+	@Test
+	void queriesMatchDijkstra(@TempDir Path tempDir) throws Exception {
+		RoadNetwork network = randomGrid(7L);
+		ContractionHierarchy built = ContractionHierarchy.build(network);
+		Path file = tempDir.resolve("roads.ch");
+		built.save(file);
+		ContractionHierarchy mapped = ContractionHierarchy.load(file);
+
+		Random random = new Random(11L);
+		for (int i = 0; i < 150; i++) {
+			int source = random.nextInt(network.nodeCount());
+			int target = random.nextInt(network.nodeCount());
+			ShortestPathTree expected = Dijkstra.shortestPaths(network.graph(), source);
+
+			assertEquals(expected.distance(target), built.distance(source, target), 1e-9);
+			assertEquals(expected.distance(target), mapped.distance(source, target), 1e-9);
+			if (expected.isReachable(target)) {
+				int[] path = mapped.path(source, target);
+				assertEquals(source, path[0]);
+				assertEquals(target, path[path.length - 1]);
+				assertEquals(expected.distance(target), lengthOf(network.graph(), path), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void distanceTableMatchesPointQueries() {
+		RoadNetwork network = randomGrid(13L);
+		ContractionHierarchy hierarchy = ContractionHierarchy.build(network);
+		int[] sources = {0, 17, 203, 411, 624};
+		int[] targets = {5, 99, 300, 520};
+
+		double[] table = hierarchy.distanceTable(sources, targets);
+
+		for (int i = 0; i < sources.length; i++) {
+			for (int j = 0; j < targets.length; j++) {
+				assertEquals(hierarchy.distance(sources[i], targets[j]), table[i * targets.length + j], 1e-9);
+			}
+		}
+	}
+
+	@Test
+	void snapsToClosestNode(@TempDir Path tempDir) throws Exception {
+		Path edgeList = tempDir.resolve("roads.csv");
+		Files.writeString(edgeList, String.join("\n",
+				"# small test network",
+				"node,a,6.9100,79.8500",
+				"node,b,6.9200,79.8600",
+				"node,c,6.9300,79.8700",
+				"edge,a,b",
+				"edge,b,c,2.5,oneway"));
+		ContractionHierarchy hierarchy = ContractionHierarchy.build(RoadNetwork.loadEdgeList(edgeList));
+
+		assertEquals(1, hierarchy.nearestNode(6.9190, 79.8610));
+		assertEquals(2.5, hierarchy.distance(1, 2), 1e-9);
+		assertTrue(Double.isInfinite(hierarchy.distance(2, 1)));
+	}
+
+	// Grid of streets with random lengths; every fifth street is one-way
+	private static RoadNetwork randomGrid(long seed) {
+		Random random = new Random(seed);
+		int n = SIDE * SIDE;
+		double[] lat = new double[n];
+		double[] lon = new double[n];
+		CsrGraph.Builder builder = new CsrGraph.Builder(n);
+		for (int r = 0; r < SIDE; r++) {
+			for (int c = 0; c < SIDE; c++) {
+				int v = r * SIDE + c;
+				lat[v] = 6.90 + r * 0.002;
+				lon[v] = 79.85 + c * 0.002;
+				if (c + 1 < SIDE) addStreet(builder, random, v, v + 1);
+				if (r + 1 < SIDE) addStreet(builder, random, v, v + SIDE);
+			}
+		}
+		return new RoadNetwork(lat, lon, builder.build());
+	}
+
+	private static void addStreet(CsrGraph.Builder builder, Random random, int a, int b) {
+		double length = 0.1 + random.nextDouble() * 0.3;
+		builder.addEdge(a, b, length);
+		if (random.nextInt(5) != 0) builder.addEdge(b, a, length);
+	}
+
+	private static double lengthOf(CsrGraph graph, int[] path) {
+		double total = 0.0;
+		for (int i = 0; i + 1 < path.length; i++) {
+			double best = Double.POSITIVE_INFINITY;
+			for (int e = graph.firstEdge(path[i]); e < graph.endEdge(path[i]); e++) {
+				if (graph.target(e) == path[i + 1]) best = Math.min(best, graph.weight(e));
+			}
+			total += best;
+		}
+		return total;
+	}
+
+}
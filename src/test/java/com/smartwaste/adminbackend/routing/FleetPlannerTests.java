@@ -0,0 +1,117 @@
+package com.smartwaste.adminbackend.routing;
+
+import com.smartwaste.adminbackend.model.Bin;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FleetPlannerTests {
+
+	@Test
+	void routesStayWithinCapacityAndEveryBinIsRoutedOrUnassigned() {
+		int binCount = 120;
+		double[] capacities = {150, 150, 200, 100, 250};
+		Random random = new Random(7L);
+		double[] demands = new double[binCount];
+		for (int b = 0; b < binCount; b++) {
+			demands[b] = 1 + random.nextInt(30);
+		}
+		demands[17] = 400; // Fits no truck
+		// Total demand is well above total capacity, so some bins can't be routed
+
+		FleetPlanner.Result result = plan(demands, capacities, 11L);
+
+		assertEveryBinOnce(result, binCount);
+		assertWithinCapacity(result, demands, capacities);
+		assertTrue(contains(result.unassignedBins, 17));
+		assertTrue(result.unassignedBins.length > 1);
+	}
+
+	@Test
+	void routesEveryBinWhenCapacityAllows() {
+		int binCount = 60;
+		double[] capacities = {500, 500, 500};
+		double[] demands = new double[binCount];
+		for (int b = 0; b < binCount; b++) {
+			demands[b] = 10;
+		}
+
+		FleetPlanner.Result result = plan(demands, capacities, 3L);
+
+		assertEveryBinOnce(result, binCount);
+		assertWithinCapacity(result, demands, capacities);
+		assertEquals(0, result.unassignedBins.length);
+	}
+
+	private static FleetPlanner.Result plan(double[] demands, double[] capacities, long seed) {
+		Random random = new Random(seed);
+		List<Bin.Location> locations = new ArrayList<>();
+		locations.add(location(6.90, 79.86)); // Depot
+		for (int i = 0; i < demands.length + capacities.length; i++) { // Bins, then truck starts
+			locations.add(location(6.85 + random.nextDouble() * 0.1, 79.83 + random.nextDouble() * 0.1));
+		}
+		DistanceMatrix matrix = DistanceMatrix.haversine(locations);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			return new FleetPlanner(matrix, demands, capacities, pool, 200).solve();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	// Each bin is on exactly one route or in unassignedBins
+	private static void assertEveryBinOnce(FleetPlanner.Result result, int binCount) {
+		int[] seen = new int[binCount];
+		for (int[] route : result.routes) {
+			if (route == null) continue;
+			for (int k = 1; k < route.length - 1; k++) {
+				seen[route[k] - 1]++;
+			}
+		}
+		for (int bin : result.unassignedBins) {
+			seen[bin]++;
+		}
+		for (int b = 0; b < binCount; b++) {
+			assertEquals(1, seen[b], "bin " + b);
+		}
+	}
+
+	// Routes run truck start -> bins -> depot and carry no more than the truck holds
+	private static void assertWithinCapacity(FleetPlanner.Result result, double[] demands, double[] capacities) {
+		int binCount = demands.length;
+		for (int r = 0; r < capacities.length; r++) {
+			int[] route = result.routes[r];
+			if (route == null) continue;
+			assertEquals(binCount + 1 + r, route[0]);
+			assertEquals(0, route[route.length - 1]);
+			double load = 0;
+			for (int k = 1; k < route.length - 1; k++) {
+				assertTrue(route[k] >= 1 && route[k] <= binCount, "only bins between start and depot");
+				load += demands[route[k] - 1];
+			}
+			assertEquals(load, result.loads[r], 1e-9);
+			assertTrue(load <= capacities[r] + 1e-9, "truck " + r + " overloaded");
+		}
+	}
+
+	private static boolean contains(int[] values, int value) {
+		for (int v : values) {
+			if (v == value) return true;
+		}
+		return false;
+	}
+
+	private static Bin.Location location(double latitude, double longitude) {
+		Bin.Location location = new Bin.Location();
+		location.setLatitude(latitude);
+		location.setLongitude(longitude);
+		return location;
+	}
+
+}
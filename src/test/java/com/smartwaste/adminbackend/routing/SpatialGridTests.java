@@ -0,0 +1,87 @@
+package com.smartwaste.adminbackend.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpatialGridTests {
+
+	@Test
+	void nearestAndRadiusMatchBruteForce() {
+		Random random = new Random(5L);
+		SpatialGrid grid = new SpatialGrid(0.005);
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			double[] p = {6.85 + random.nextDouble() * 0.15, 79.83 + random.nextDouble() * 0.1};
+			points.add(p);
+			grid.put("p" + i, p[0], p[1]);
+		}
+
+		for (int q = 0; q < 50; q++) {
+			double lat = 6.80 + random.nextDouble() * 0.25;
+			double lon = 79.80 + random.nextDouble() * 0.2;
+			List<Integer> byDistance = new ArrayList<>();
+			for (int i = 0; i < points.size(); i++) byDistance.add(i);
+			byDistance.sort(Comparator.comparingDouble(i -> Node.calculateDistance(lat, lon, points.get(i)[0], points.get(i)[1])));
+
+			List<String> nearest = grid.nearest(lat, lon, 5, null);
+			for (int k = 0; k < 5; k++) {
+				assertEquals("p" + byDistance.get(k), nearest.get(k));
+			}
+
+			long expectedInRadius = byDistance.stream()
+					.filter(i -> Node.calculateDistance(lat, lon, points.get(i)[0], points.get(i)[1]) <= 1.5)
+					.count();
+			assertEquals(expectedInRadius, grid.withinRadius(lat, lon, 1.5).size());
+		}
+	}
+
+	@Test
+	void movedAndRemovedPointsAreFoundAtTheirNewPosition() {
+		SpatialGrid grid = new SpatialGrid(0.01);
+		grid.put("bin", 6.9100, 79.8500);
+		grid.put("truck", 6.9300, 79.8700);
+		grid.put("truck", 6.9101, 79.8501); // Moved next to the bin
+
+		assertEquals(Optional.of("bin"), grid.findAt(6.9100, 79.8500, 1e-6));
+		assertTrue(grid.findAt(6.9300, 79.8700, 1e-6).isEmpty());
+		assertEquals(List.of("truck"), grid.nearest(6.9101, 79.8501, 1, id -> !id.equals("bin")));
+
+		grid.remove("bin");
+		assertTrue(grid.findAt(6.9100, 79.8500, 1e-6).isEmpty());
+		assertEquals(1, grid.size());
+	}
+
+	@Test
+	void boxQueriesMatchBruteForceAtEveryZoom() {
+		Random random = new Random(11L);
+		SpatialGrid grid = new SpatialGrid(0.005);
+		List<double[]> points = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			double[] p = {6.85 + random.nextDouble() * 0.15, 79.83 + random.nextDouble() * 0.1};
+			points.add(p);
+			grid.put("p" + i, p[0], p[1]);
+		}
+
+		// Small boxes walk the cells, huge ones fall back to scanning every point
+		for (double span : new double[] {0.002, 0.02, 0.1, 5.0}) {
+			for (int q = 0; q < 20; q++) {
+				double minLat = 6.84 + random.nextDouble() * 0.15;
+				double minLon = 79.82 + random.nextDouble() * 0.1;
+				long expected = points.stream()
+						.filter(p -> p[0] >= minLat && p[0] <= minLat + span && p[1] >= minLon && p[1] <= minLon + span)
+						.count();
+				assertEquals(expected, grid.withinBox(minLat, minLon, minLat + span, minLon + span).size());
+			}
+		}
+		assertTrue(grid.withinBox(10.0, 80.0, 11.0, 81.0).isEmpty());
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.smartwaste.adminbackend.routing;
+
+import com.smartwaste.adminbackend.model.Bin;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TourOptimizerTests {
+
+	@Test
+	void improvedPathKeepsEndpointsAndVisitsEveryStopOnce() {
+		DistanceMatrix matrix = DistanceMatrix.haversine(randomLocations(60, 42L));
+		int[] stops = new int[58];
+		for (int i = 0; i < stops.length; i++) {
+			stops[i] = i + 1;
+		}
+
+		int[] path = TourOptimizer.nearestNeighbourPath(matrix, 0, stops, 59);
+		double nearestNeighbourLength = TourOptimizer.pathLength(matrix, path);
+		new TourOptimizer(matrix, 1000).improve(path);
+
+		assertEquals(0, path[0]);
+		assertEquals(59, path[path.length - 1]);
+		int[] inner = Arrays.copyOfRange(path, 1, path.length - 1);
+		Arrays.sort(inner);
+		assertArrayEquals(stops, inner);
+		assertTrue(TourOptimizer.pathLength(matrix, path) <= nearestNeighbourLength + 1e-9);
+	}
+
+	@Test
+	void untanglesCrossingPath() {
+		// Square visited corner-to-corner: 0 -> 2 -> 1 -> 3 crosses itself, 0 -> 1 -> 2 -> 3 does not
+		List<Bin.Location> square = List.of(
+				location(6.90, 79.85), location(6.90, 79.86), location(6.91, 79.86), location(6.91, 79.85));
+		DistanceMatrix matrix = DistanceMatrix.haversine(square);
+
+		int[] path = new TourOptimizer(matrix, 1000).improve(new int[]{0, 2, 1, 3});
+
+		assertArrayEquals(new int[]{0, 1, 2, 3}, path);
+	}
+
+	private static List<Bin.Location> randomLocations(int count, long seed) {
+		Random random = new Random(seed);
+		List<Bin.Location> locations = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			locations.add(location(6.85 + random.nextDouble() * 0.1, 79.83 + random.nextDouble() * 0.1));
+		}
+		return locations;
+	}
+
+	private static Bin.Location location(double latitude, double longitude) {
+		Bin.Location location = new Bin.Location();
+		location.setLatitude(latitude);
+		location.setLongitude(longitude);
+		return location;
+	}
+
+}
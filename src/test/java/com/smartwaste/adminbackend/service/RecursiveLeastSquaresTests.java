@@ -0,0 +1,46 @@
+package com.smartwaste.adminbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecursiveLeastSquaresTests {
+
+	@Test
+	void learnsALinearRelationOneObservationAtATime() {
+		Random random = new Random(3L);
+		RecursiveLeastSquares rls = new RecursiveLeastSquares(3, 1.0, 1000.0);
+		for (int i = 0; i < 200; i++) {
+			double[] x = {1.0, random.nextDouble() * 24, random.nextDouble() * 7};
+			rls.update(x, 2.0 + 3.0 * x[1] - 1.5 * x[2]);
+		}
+
+		double[] weights = rls.getWeights();
+		assertEquals(2.0, weights[0], 1e-3);
+		assertEquals(3.0, weights[1], 1e-3);
+		assertEquals(-1.5, weights[2], 1e-3);
+		assertEquals(2.0 + 3.0 * 10 - 1.5 * 4, rls.predict(new double[] {1.0, 10, 4}), 1e-3);
+	}
+
+	@Test
+	void forgettingFollowsAChangeInBehaviour() {
+		Random random = new Random(4L);
+		RecursiveLeastSquares rls = new RecursiveLeastSquares(2, 0.95, 1000.0);
+		for (int i = 0; i < 300; i++) {
+			double[] x = {1.0, random.nextDouble() * 10};
+			rls.update(x, 5.0 + x[1]);
+		}
+		double lastError = 0;
+		for (int i = 0; i < 300; i++) { // The slope changes
+			double[] x = {1.0, random.nextDouble() * 10};
+			lastError = rls.update(x, 5.0 + 4.0 * x[1]);
+		}
+
+		assertTrue(Math.abs(lastError) < 1e-3);
+		assertEquals(4.0, rls.getWeights()[1], 1e-3);
+		assertEquals(600, rls.getUpdates());
+	}
+}